@@ -4,77 +4,1790 @@ import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 
 public class CoopLoopy3 extends JPanel {
 
+    // Every parallel pass (generator batches and corpora, grading, tiles, regions) shares this one daemon pool
+    // sized to the cores. It is a fork-join pool, so a task that fans out again helps run its own subtasks.
+    static final ForkJoinPool WORKERS = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        t.setName("loopy-worker-" + t.getPoolIndex()); t.setDaemon(true); return t;
+    }, null, false);
+
     static class Node {
         int r, c, id;
         List<Edge> connectedEdges = new ArrayList<>();
         int filledCount = 0;
         int crossCount = 0;
         int unknownCount = 0;
+        Node partner; // while this node ends a line segment (filledCount == 1), the segment's other end
+
+        public Node(int r, int c, int id) { this.r = r; this.c = c; this.id = id; }
+        public void initCache() { this.unknownCount = connectedEdges.size(); }
+
+        public void updateCache(int oldState, int newState) {
+            if (oldState == 0) unknownCount--; else if (oldState == 1) filledCount--; else if (oldState == 2) crossCount--;
+            if (newState == 0) unknownCount++; else if (newState == 1) filledCount++; else if (newState == 2) crossCount++;
+        }
+    }
+
+    static class Cell {
+        int r, c, clue;
+        List<Edge> edges = new ArrayList<>();
+        int filledCount = 0;
+        int crossCount = 0;
+        int unknownCount = 4;
+
+        public Cell(int r, int c, int clue) { this.r = r; this.c = c; this.clue = clue; }
+
+        public void updateCache(int oldState, int newState) {
+            if (oldState == 0) unknownCount--; else if (oldState == 1) filledCount--; else if (oldState == 2) crossCount--;
+            if (newState == 0) unknownCount++; else if (newState == 1) filledCount++; else if (newState == 2) crossCount++;
+        }
+
+        public Edge getTop() { for(Edge e:edges) if(e.isHorizontal && e.n1.r == r) return e; return null; }
+        public Edge getBottom() { for(Edge e:edges) if(e.isHorizontal && e.n1.r == r+1) return e; return null; }
+        public Edge getLeft() { for(Edge e:edges) if(!e.isHorizontal && e.n1.c == c) return e; return null; }
+        public Edge getRight() { for(Edge e:edges) if(!e.isHorizontal && e.n1.c == c+1) return e; return null; }
+    }
+
+    static class Edge {
+        Node n1, n2;
+        List<Cell> connectedCells = new ArrayList<>();
+        boolean isHorizontal;
+        int state, id; 
+        Bitboard bits;
+        private static final int HIT_TOLERANCE = 15; 
+
+        public Edge(Node n1, Node n2, boolean isHorizontal, int id) {
+            this.n1 = n1; this.n2 = n2; this.isHorizontal = isHorizontal; this.id = id; this.state = 0;
+        }
+
+        public void setState(int newState) {
+            if (this.state == newState) return;
+            int oldState = this.state;
+            this.state = newState;
+            n1.updateCache(oldState, newState);
+            n2.updateCache(oldState, newState);
+            for (Cell c : connectedCells) c.updateCache(oldState, newState);
+            if (bits != null) bits.set(id, newState);
+            if (newState == 1) joinEnds();
+            else if (oldState == 1) { relink(n1); relink(n2); }
+        }
+
+        // --- CHAIN ENDS: A NEW LINE MERGES TWO SEGMENTS IN O(1) ---
+        private void joinEnds() {
+            if (n1.filledCount > 2 || n2.filledCount > 2) { unlinkArms(n1); unlinkArms(n2); return; }
+            Node far1 = n1.filledCount == 2 ? n1.partner : n1, far2 = n2.filledCount == 2 ? n2.partner : n2;
+            if (far1 == null || far2 == null) { relink(n1); relink(n2); return; }
+            n1.partner = null; n2.partner = null;
+            if (far1 == n2) return; // closed a loop
+            far1.partner = far2; far2.partner = far1;
+        }
+
+        // Removing a line splits a segment, so the ends on each side are found by walking it again.
+        static void relink(Node n) {
+            if (n.filledCount == 0 || n.filledCount > 2) { n.partner = null; return; }
+            Node[] ends = {n, n};
+            int k = 0;
+            for (Edge e : n.connectedEdges) if (e.state == 1) ends[k++] = walk(n, e);
+            n.partner = null;
+            if (ends[0] == n && n.filledCount == 2) return; // n sits on a closed loop
+            for (int i = 0; i < 2; i++) ends[i].partner = ends[i].filledCount == 1 && ends[1 - i].filledCount == 1 ? ends[1 - i] : null;
+        }
+
+        // A branch is not a path: every segment end reachable from it loses its partner until the branch is gone.
+        private static void unlinkArms(Node n) {
+            n.partner = null;
+            for (Edge e : n.connectedEdges) if (e.state == 1) walk(n, e).partner = null;
+        }
+
+        // Follows lines from 'from' through degree-2 nodes and returns the node where the path stops.
+        private static Node walk(Node from, Edge via) {
+            Node cur = via.n1 == from ? via.n2 : via.n1;
+            while (cur.filledCount == 2 && cur != from) {
+                cur.partner = null;
+                for (Edge e : cur.connectedEdges) if (e.state == 1 && e != via) { via = e; break; }
+                cur = via.n1 == cur ? via.n2 : via.n1;
+            }
+            return cur;
+        }
+
+        public boolean contains(int x, int y, int gap, int offsetX, int offsetY) {
+            int x1 = n1.c * gap + offsetX; int y1 = n1.r * gap + offsetY;
+            if (isHorizontal) return x >= x1 + 10 && x <= x1 + gap - 10 && y >= y1 - HIT_TOLERANCE && y <= y1 + HIT_TOLERANCE;
+            else return x >= x1 - HIT_TOLERANCE && x <= x1 + HIT_TOLERANCE && y >= y1 + 10 && y <= y1 + gap - 10;
+        }
+    }
+
+    // Headless Node/Edge/Cell graph for one puzzle; the game panel and the hint service both build on it.
+    static class Board {
+        final int rows, cols;
+        final List<Node> nodes = new ArrayList<>();
+        final List<Edge> edges = new ArrayList<>();
+        final List<Cell> cells = new ArrayList<>();
+
+        public Board(int[][] clues) {
+            this.rows = clues.length; this.cols = clues[0].length;
+            int nodeId = 0, edgeId = 0;
+            Node[][] nodeGrid = new Node[rows + 1][cols + 1];
+            
+            for (int r = 0; r <= rows; r++) {
+                for (int c = 0; c <= cols; c++) {
+                    Node n = new Node(r, c, nodeId++);
+                    nodeGrid[r][c] = n; nodes.add(n);
+                }
+            }
+            
+            for (int r = 0; r <= rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    Edge e = new Edge(nodeGrid[r][c], nodeGrid[r][c + 1], true, edgeId++);
+                    edges.add(e); nodeGrid[r][c].connectedEdges.add(e); nodeGrid[r][c + 1].connectedEdges.add(e);
+                }
+            }
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c <= cols; c++) {
+                    Edge e = new Edge(nodeGrid[r][c], nodeGrid[r + 1][c], false, edgeId++);
+                    edges.add(e); nodeGrid[r][c].connectedEdges.add(e); nodeGrid[r + 1][c].connectedEdges.add(e);
+                }
+            }
+            
+            int vertical = (rows + 1) * cols;
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    Cell cell = new Cell(r, c, clues[r][c]);
+                    for (Edge e : new Edge[]{edges.get(r * cols + c), edges.get((r + 1) * cols + c), edges.get(vertical + r * (cols + 1) + c), edges.get(vertical + r * (cols + 1) + c + 1)}) {
+                        cell.edges.add(e); e.connectedCells.add(cell);
+                    }
+                    cells.add(cell);
+                }
+            }
+
+            for (Node n : nodes) n.initCache();
+        }
+
+        public void load(int[][] clues, int[] states) {
+            for (Cell c : cells) c.clue = clues[c.r][c.c];
+            for (Edge e : edges) e.setState(states == null ? 0 : states[e.id]);
+        }
+    }
+
+    // ==========================================
+    // PACKED BITBOARD (PATTERN WINDOWS)
+    // ==========================================
+
+    // Edge states live in two bit planes over a grid padded by one cell, so border
+    // edges read as crosses and window extraction needs no bounds checks.
+    // Window layout: 12 edge slots x 2 bits (0 = top, 1 = right, 2 = bottom, 3 = left,
+    // 4..11 = the two outward spokes at the TL, TR, BR and BL corners), then 9 clues x 3 bits.
+    static class Bitboard {
+        private static final int CLUE_SHIFT = 24;
+        private static final int CENTER_CLUE_SHIFT = CLUE_SHIFT + 12;
+        private static final int[] ROTATE = {1, 2, 3, 0, 7, 6, 9, 8, 11, 10, 5, 4};
+        private static final int[][] CORNER_SLOTS = {{0, 3, 4, 5}, {0, 1, 6, 7}, {1, 2, 8, 9}, {2, 3, 10, 11}};
+        // Slot geometry relative to the cell's padded (R, C): horizontal?, dR, dC
+        private static final int[][] SLOT_GEOMETRY = {
+            {1, 0, 0}, {0, 0, 1}, {1, 1, 0}, {0, 0, 0},
+            {0, -1, 0}, {1, 0, -1}, {0, -1, 1}, {1, 0, 1},
+            {0, 1, 1}, {1, 1, 1}, {0, 1, 0}, {1, 1, -1}
+        };
+
+        static final byte[] CELL_TABLE = new byte[1 << 11];
+        static final byte[] NODE_TABLE = new byte[1 << 8];
+        static final List<long[]> PATTERNS = new ArrayList<>(); // {mask, value, lineSlots}
+        static final List<Rule> PATTERN_IDS = new ArrayList<>();
+
+        final int rows, cols, pcols;
+        final long[] lines, crosses;
+        final byte[] clues; // clue + 1, 0 = no clue
+        final int[] padIndex, edgeAt;
+        private final int[] slotBase = new int[12], slotStride = new int[12];
+
+        static {
+            for (int key = 0; key < CELL_TABLE.length; key++) {
+                int clue = (key >>> 8) - 1;
+                if (clue < 0 || clue > 3) continue;
+                CELL_TABLE[key] = forcedBy(key & 0xFF, clue, clue);
+            }
+            for (int key = 0; key < NODE_TABLE.length; key++) {
+                int f = 0, u = 0;
+                for (int i = 0; i < 4; i++) { int st = (key >>> (2 * i)) & 3; if (st == 1) f++; else if (st == 0) u++; }
+                if (f == 2 || (f == 0 && u == 1)) NODE_TABLE[key] = forcedBy(key, f, f);
+                else if (f == 1 && u == 1) NODE_TABLE[key] = forcedBy(key, 2, 2);
+            }
+            addPattern(0, 1, 0, 0, 1 << 0 | 1 << 3, Rule.DIAGONAL_3_0);
+            addPattern(5, 4, 0, 0, 1 << 3 | 1 << 1, Rule.ADJACENT_3S);
+            addPattern(8, 4, 0, 0, 1 << 0 | 1 << 3, Rule.DIAGONAL_3S);
+            addPattern(-1, 0, 1 << 4 | 1 << 5, 2 << 8 | 2 << 10, 1 << 0 | 1 << 3, Rule.CORNER_3);
+        }
+
+        // Lines low nibble, crosses high nibble: unknowns become crosses once 'full' lines exist, lines once they are all needed.
+        private static byte forcedBy(int states, int filledTarget, int needed) {
+            int f = 0, u = 0, unknownMask = 0;
+            for (int i = 0; i < 4; i++) {
+                int st = (states >>> (2 * i)) & 3;
+                if (st == 1) f++; else if (st == 0) { u++; unknownMask |= 1 << i; }
+            }
+            if (u == 0) return 0;
+            if (f == filledTarget) return (byte) (unknownMask << 4);
+            if (f + u == needed) return (byte) unknownMask;
+            return 0;
+        }
+
+        // A centre 3 with either a neighbour clue (k = 0..8, row-major) or a set of required spoke states, in all four rotations.
+        private static void addPattern(int neighbour, int neighbourCode, int slotMask, long slotValue, int lineSlots, Rule id) {
+            long mask = 7L << CENTER_CLUE_SHIFT, value = 4L << CENTER_CLUE_SHIFT;
+            if (neighbour >= 0) { mask |= 7L << (CLUE_SHIFT + 3 * neighbour); value |= (long) neighbourCode << (CLUE_SHIFT + 3 * neighbour); }
+            for (int s = 0; s < 12; s++) if ((slotMask & (1 << s)) != 0) mask |= 3L << (2 * s);
+            value |= slotValue;
+            for (int turn = 0; turn < 4; turn++) {
+                PATTERNS.add(new long[]{mask, value, lineSlots});
+                PATTERN_IDS.add(id);
+                mask = rotate(mask); value = rotate(value); lineSlots = rotateSlots(lineSlots);
+            }
+        }
+
+        private static long rotate(long w) {
+            long out = 0;
+            for (int s = 0; s < 12; s++) out |= ((w >>> (2 * s)) & 3) << (2 * ROTATE[s]);
+            for (int dr = -1; dr <= 1; dr++) for (int dc = -1; dc <= 1; dc++) {
+                int from = (dr + 1) * 3 + (dc + 1), to = (dc + 1) * 3 + (-dr + 1);
+                out |= ((w >>> (CLUE_SHIFT + 3 * from)) & 7) << (CLUE_SHIFT + 3 * to);
+            }
+            return out;
+        }
+
+        private static int rotateSlots(int slots) {
+            int out = 0;
+            for (int s = 0; s < 12; s++) if ((slots & (1 << s)) != 0) out |= 1 << ROTATE[s];
+            return out;
+        }
+
+        Bitboard(int rows, int cols) {
+            this.rows = rows; this.cols = cols; this.pcols = cols + 2;
+            int prows = rows + 2, paddedH = (prows + 1) * pcols, paddedEdges = paddedH + prows * (pcols + 1);
+            lines = new long[(paddedEdges + 63) >>> 6]; crosses = new long[lines.length];
+            clues = new byte[prows * pcols];
+            padIndex = new int[(rows + 1) * cols + rows * (cols + 1)];
+            edgeAt = new int[paddedEdges];
+            Arrays.fill(edgeAt, -1);
+            for (int s = 0; s < 12; s++) {
+                int[] g = SLOT_GEOMETRY[s];
+                slotStride[s] = g[0] == 1 ? pcols : pcols + 1;
+                slotBase[s] = (g[0] == 1 ? 0 : paddedH) + g[1] * slotStride[s] + g[2];
+            }
+            int realH = (rows + 1) * cols;
+            for (int id = 0; id < padIndex.length; id++) {
+                int p = id < realH ? (id / cols + 1) * pcols + id % cols + 1
+                                   : paddedH + ((id - realH) / (cols + 1) + 1) * (pcols + 1) + (id - realH) % (cols + 1) + 1;
+                padIndex[id] = p; edgeAt[p] = id;
+            }
+            for (int p = 0; p < paddedEdges; p++) if (edgeAt[p] < 0) crosses[p >>> 6] |= 1L << p;
+        }
+
+        static Bitboard attach(List<Cell> cells, List<Edge> edges) {
+            int rows = 0, cols = 0;
+            for (Cell c : cells) { rows = Math.max(rows, c.r + 1); cols = Math.max(cols, c.c + 1); }
+            Bitboard b = new Bitboard(rows, cols);
+            for (Cell c : cells) b.clues[(c.r + 1) * b.pcols + c.c + 1] = (byte) (c.clue + 1);
+            for (Edge e : edges) { b.set(e.id, e.state); e.bits = b; }
+            return b;
+        }
+
+        void set(int id, int state) {
+            int p = padIndex[id]; long bit = 1L << p;
+            lines[p >>> 6] &= ~bit; crosses[p >>> 6] &= ~bit;
+            if (state == 1) lines[p >>> 6] |= bit; else if (state == 2) crosses[p >>> 6] |= bit;
+        }
+
+        private int stateAt(int p) {
+            return (int) ((lines[p >>> 6] >>> p) & 1) | (int) ((crosses[p >>> 6] >>> p) & 1) << 1;
+        }
+
+        long window(int r, int c) {
+            int R = r + 1, C = c + 1;
+            long w = 0;
+            for (int s = 0; s < 12; s++) w |= (long) stateAt(slotBase[s] + R * slotStride[s] + C) << (2 * s);
+            int k = 0;
+            for (int dr = -1; dr <= 1; dr++) {
+                int row = (R + dr) * pcols + C;
+                for (int dc = -1; dc <= 1; dc++, k++) w |= (long) clues[row + dc] << (CLUE_SHIFT + 3 * k);
+            }
+            return w;
+        }
+
+        static int cellKey(long w) { return (int) (w & 0xFF) | ((int) (w >>> CENTER_CLUE_SHIFT) & 7) << 8; }
+
+        static int nodeKey(long w, int corner) {
+            int[] slots = CORNER_SLOTS[corner]; int key = 0;
+            for (int i = 0; i < 4; i++) key |= (int) ((w >>> (2 * slots[i])) & 3) << (2 * i);
+            return key;
+        }
+
+        static int cornerSlots(int corner, int nibble) {
+            int[] slots = CORNER_SLOTS[corner]; int out = 0;
+            for (int i = 0; i < 4; i++) if ((nibble & (1 << i)) != 0) out |= 1 << slots[i];
+            return out;
+        }
+
+        int edgeAt(int r, int c, int slot) { return edgeAt[slotBase[slot] + (r + 1) * slotStride[slot] + c + 1]; }
+    }
+
+    // ==========================================
+    // PACKED STRUCT-OF-ARRAYS BOARD
+    // ==========================================
+
+    // Primitive mirror of the Node/Edge/Cell graph. Edge, node and cell indices match Edge.id, Node.id and
+    // the row-major cell order, so the Swing objects stay a thin view over it. Topology arrays are shared
+    // between copies; only states, counts and the undo trail are cloned.
+    static class PackedBoard {
+        final int rows, cols, nodeCount, edgeCount, cellCount;
+        final int[] edgeN1, edgeN2;
+        final int[] nodeEdgeStart, nodeEdges;
+        final int[] cellEdgeStart, cellEdges;
+        final int[] edgeCellStart, edgeCells;
+        final byte[] clue;
+        final byte[] state, nodeFilled, nodeUnknown, cellFilled, cellUnknown;
+        int lineCount;
+
+        int[] visits; // propagation visits per edge, counted only while a heat map is attached
+        byte[] openFilled, openUnknown; // tile boards only: lines and unknowns just outside the tile, per node
+
+        private int[] trail;
+        private int trailSize;
+        private final int[] parent, compLines;
+
+        // Segment ends: partner[n] is the other end of n's segment while n is an end, segLen[n] its line count.
+        // Each line added pushes the loop counters and four (node, partner, length) records; lines only go
+        // away through undo(), which pops them in LIFO order. Exact while no node has more than two lines.
+        private final int[] partner, segLen;
+        private int[] ends = new int[56], closures = new int[16];
+        private int endsSize, closureCount, closedLoops, loopLen, branches;
+
+        // Edge pairs (after enablePairs()): a parity union-find over edge ids where an edge is a line iff its
+        // root is one xor the parities along its path, each class also threaded on a circular pairNext list.
+        // Unions go on the trail as (log index << 2 | 3) and undo() splits them again; without path
+        // compression that is exact. Relations come from enumerating each node's and clue's unknown edges.
+        private int[] pairParent, pairSize, pairNext, pairLog, pairEdge, pairRoot, pairSlot, pairPar;
+        private byte[] pairParity;
+        private int pairLogSize;
+
+        private PackedBoard(int rows, int cols) {
+            this.rows = rows; this.cols = cols;
+            nodeCount = (rows + 1) * (cols + 1); cellCount = rows * cols;
+            edgeCount = (rows + 1) * cols + rows * (cols + 1);
+            edgeN1 = new int[edgeCount]; edgeN2 = new int[edgeCount];
+            for (int r = 0; r <= rows; r++) for (int c = 0; c < cols; c++) { int e = hEdge(r, c); edgeN1[e] = node(r, c); edgeN2[e] = node(r, c + 1); }
+            for (int r = 0; r < rows; r++) for (int c = 0; c <= cols; c++) { int e = vEdge(r, c); edgeN1[e] = node(r, c); edgeN2[e] = node(r + 1, c); }
+
+            nodeEdgeStart = new int[nodeCount + 1];
+            for (int e = 0; e < edgeCount; e++) { nodeEdgeStart[edgeN1[e] + 1]++; nodeEdgeStart[edgeN2[e] + 1]++; }
+            for (int n = 0; n < nodeCount; n++) nodeEdgeStart[n + 1] += nodeEdgeStart[n];
+            nodeEdges = new int[nodeEdgeStart[nodeCount]];
+            int[] fill = Arrays.copyOf(nodeEdgeStart, nodeCount);
+            for (int e = 0; e < edgeCount; e++) { nodeEdges[fill[edgeN1[e]]++] = e; nodeEdges[fill[edgeN2[e]]++] = e; }
+
+            cellEdgeStart = new int[cellCount + 1]; cellEdges = new int[cellCount * 4];
+            edgeCellStart = new int[edgeCount + 1];
+            for (int r = 0; r < rows; r++) for (int c = 0; c < cols; c++) {
+                int k = cell(r, c), base = k * 4;
+                cellEdgeStart[k + 1] = base + 4;
+                cellEdges[base] = hEdge(r, c); cellEdges[base + 1] = vEdge(r, c + 1);
+                cellEdges[base + 2] = hEdge(r + 1, c); cellEdges[base + 3] = vEdge(r, c);
+                for (int i = 0; i < 4; i++) edgeCellStart[cellEdges[base + i] + 1]++;
+            }
+            for (int e = 0; e < edgeCount; e++) edgeCellStart[e + 1] += edgeCellStart[e];
+            edgeCells = new int[edgeCellStart[edgeCount]];
+            fill = Arrays.copyOf(edgeCellStart, edgeCount);
+            for (int k = 0; k < cellCount; k++) for (int i = cellEdgeStart[k]; i < cellEdgeStart[k + 1]; i++) edgeCells[fill[cellEdges[i]]++] = k;
+
+            clue = new byte[cellCount];
+            Arrays.fill(clue, (byte) -1);
+            state = new byte[edgeCount]; nodeFilled = new byte[nodeCount]; nodeUnknown = new byte[nodeCount];
+            cellFilled = new byte[cellCount]; cellUnknown = new byte[cellCount];
+            trail = new int[edgeCount + 16];
+            parent = new int[nodeCount]; compLines = new int[nodeCount];
+            partner = new int[nodeCount]; segLen = new int[nodeCount];
+            reset();
+        }
+
+        private PackedBoard(PackedBoard src) {
+            rows = src.rows; cols = src.cols; nodeCount = src.nodeCount; edgeCount = src.edgeCount; cellCount = src.cellCount;
+            edgeN1 = src.edgeN1; edgeN2 = src.edgeN2;
+            nodeEdgeStart = src.nodeEdgeStart; nodeEdges = src.nodeEdges;
+            cellEdgeStart = src.cellEdgeStart; cellEdges = src.cellEdges;
+            edgeCellStart = src.edgeCellStart; edgeCells = src.edgeCells;
+            clue = src.clue.clone();
+            state = src.state.clone(); nodeFilled = src.nodeFilled.clone(); nodeUnknown = src.nodeUnknown.clone();
+            cellFilled = src.cellFilled.clone(); cellUnknown = src.cellUnknown.clone();
+            lineCount = src.lineCount;
+            trail = new int[src.trail.length];
+            parent = new int[nodeCount]; compLines = new int[nodeCount];
+            partner = src.partner.clone(); segLen = src.segLen.clone();
+            closedLoops = src.closedLoops; loopLen = src.loopLen; branches = src.branches;
+            if (src.openFilled != null) { openFilled = src.openFilled.clone(); openUnknown = src.openUnknown.clone(); }
+            if (src.pairParent != null) {
+                enablePairs();
+                System.arraycopy(src.pairParent, 0, pairParent, 0, edgeCount); System.arraycopy(src.pairParity, 0, pairParity, 0, edgeCount);
+                System.arraycopy(src.pairSize, 0, pairSize, 0, edgeCount); System.arraycopy(src.pairNext, 0, pairNext, 0, edgeCount);
+                pairLog = src.pairLog.clone(); pairLogSize = src.pairLogSize;
+            }
+        }
+
+        static PackedBoard grid(int rows, int cols) { return new PackedBoard(rows, cols); }
+
+        static PackedBoard fromClues(int[][] clues) {
+            PackedBoard b = new PackedBoard(clues.length, clues[0].length);
+            for (int r = 0; r < b.rows; r++) for (int c = 0; c < b.cols; c++) b.clue[b.cell(r, c)] = (byte) clues[r][c];
+            return b;
+        }
+
+        static PackedBoard fromGraph(List<Cell> cells, List<Edge> edges) {
+            int rows = 0, cols = 0;
+            for (Cell c : cells) { rows = Math.max(rows, c.r + 1); cols = Math.max(cols, c.c + 1); }
+            PackedBoard b = new PackedBoard(rows, cols);
+            for (Cell c : cells) b.clue[b.cell(c.r, c.c)] = (byte) c.clue;
+            b.load(edges);
+            return b;
+        }
+
+        PackedBoard copy() { return new PackedBoard(this); }
+
+        int hEdge(int r, int c) { return r * cols + c; }
+        int vEdge(int r, int c) { return (rows + 1) * cols + r * (cols + 1) + c; }
+        int node(int r, int c) { return r * (cols + 1) + c; }
+        int cell(int r, int c) { return r * cols + c; }
+        int other(int e, int n) { return edgeN1[e] == n ? edgeN2[e] : edgeN1[e]; }
+
+        void reset() {
+            Arrays.fill(state, (byte) 0); Arrays.fill(nodeFilled, (byte) 0); Arrays.fill(cellFilled, (byte) 0);
+            Arrays.fill(cellUnknown, (byte) 4);
+            for (int n = 0; n < nodeCount; n++) nodeUnknown[n] = (byte) (nodeEdgeStart[n + 1] - nodeEdgeStart[n]);
+            Arrays.fill(partner, -1); Arrays.fill(segLen, 0);
+            lineCount = 0; trailSize = 0; endsSize = 0; closureCount = 0; closedLoops = 0; loopLen = 0; branches = 0;
+            if (pairParent != null) resetPairs();
+        }
+
+        void enablePairs() {
+            if (pairParent != null) return;
+            pairParent = new int[edgeCount]; pairSize = new int[edgeCount]; pairNext = new int[edgeCount]; pairParity = new byte[edgeCount];
+            pairLog = new int[48]; pairEdge = new int[4]; pairRoot = new int[4]; pairSlot = new int[4]; pairPar = new int[4];
+            resetPairs();
+        }
+
+        private void resetPairs() {
+            for (int e = 0; e < edgeCount; e++) { pairParent[e] = e; pairNext[e] = e; pairSize[e] = 1; }
+            Arrays.fill(pairParity, (byte) 0);
+            pairLogSize = 0;
+        }
+
+        void load(List<Edge> edges) {
+            reset();
+            for (Edge e : edges) if (e.state != 0) apply(e.id, 0, e.state);
+        }
+
+        // Spokes of node n that leave the board: they count towards its degree but are never set from here.
+        void setOpen(int n, int lines, int unknown) {
+            if (openFilled == null) { openFilled = new byte[nodeCount]; openUnknown = new byte[nodeCount]; }
+            openFilled[n] = (byte) lines; openUnknown[n] = (byte) unknown;
+        }
+
+        // --- STATE CHANGES (TRAILED FOR CHEAP UNDO) ---
+        void set(int e, int s) {
+            int old = state[e];
+            if (old == s) return;
+            if (trailSize == trail.length) trail = Arrays.copyOf(trail, trail.length * 2);
+            trail[trailSize++] = e << 2 | old;
+            apply(e, old, s);
+        }
+
+        int mark() { return trailSize; }
+
+        // The first edge set at or after trail position 'from', or -1; union records are skipped.
+        int firstSetSince(int from) {
+            for (int i = from; i < trailSize; i++) if ((trail[i] & 3) != 3) return trail[i] >>> 2;
+            return -1;
+        }
+
+        void undo(int mark) {
+            while (trailSize > mark) {
+                int t = trail[--trailSize], e = t >>> 2;
+                if ((t & 3) == 3) splitPair(e); else apply(e, state[e], t & 3);
+            }
+        }
+
+        private void apply(int e, int oldState, int newState) {
+            state[e] = (byte) newState;
+            int d = (newState == 1 ? 1 : 0) - (oldState == 1 ? 1 : 0), du = (newState == 0 ? 1 : 0) - (oldState == 0 ? 1 : 0);
+            lineCount += d;
+            if (d > 0) branches += (nodeFilled[edgeN1[e]] == 2 ? 1 : 0) + (nodeFilled[edgeN2[e]] == 2 ? 1 : 0);
+            else if (d < 0) branches -= (nodeFilled[edgeN1[e]] == 3 ? 1 : 0) + (nodeFilled[edgeN2[e]] == 3 ? 1 : 0);
+            nodeFilled[edgeN1[e]] += d; nodeFilled[edgeN2[e]] += d;
+            nodeUnknown[edgeN1[e]] += du; nodeUnknown[edgeN2[e]] += du;
+            for (int i = edgeCellStart[e]; i < edgeCellStart[e + 1]; i++) { cellFilled[edgeCells[i]] += d; cellUnknown[edgeCells[i]] += du; }
+            if (d > 0) joinEnds(edgeN1[e], edgeN2[e]);
+            else if (d < 0) splitEnds();
+        }
+
+        // --- CHAIN ENDS: MERGING TWO SEGMENTS IS O(1) ---
+        private void joinEnds(int a, int b) {
+            int farA = nodeFilled[a] == 2 ? partner[a] : a, farB = nodeFilled[b] == 2 ? partner[b] : b;
+            if (nodeFilled[a] > 2 || nodeFilled[b] > 2 || farA < 0 || farB < 0) { farA = a; farB = b; } // contradiction, only undo follows
+            if (endsSize + 14 > ends.length) ends = Arrays.copyOf(ends, ends.length * 2);
+            ends[endsSize++] = closedLoops; ends[endsSize++] = loopLen;
+            saveEnd(a); saveEnd(b); saveEnd(farA); saveEnd(farB);
+            int len = (nodeFilled[a] == 2 ? segLen[a] : 0) + (nodeFilled[b] == 2 ? segLen[b] : 0) + 1;
+            partner[a] = -1; partner[b] = -1;
+            if (nodeFilled[a] > 2 || nodeFilled[b] > 2) return;
+            if (farA == b) { closedLoops++; loopLen = segLen[a] + 1; return; }
+            partner[farA] = farB; partner[farB] = farA; segLen[farA] = len; segLen[farB] = len;
+            for (int i = nodeEdgeStart[farA]; i < nodeEdgeStart[farA + 1]; i++) {
+                int e = nodeEdges[i];
+                if (state[e] == 0 && other(e, farA) == farB) {
+                    if (closureCount == closures.length) closures = Arrays.copyOf(closures, closureCount * 2);
+                    closures[closureCount++] = e;
+                }
+            }
+        }
+
+        private void saveEnd(int n) { ends[endsSize++] = n; ends[endsSize++] = partner[n]; ends[endsSize++] = segLen[n]; }
+
+        private void splitEnds() {
+            for (int i = 0; i < 4; i++) { endsSize -= 3; partner[ends[endsSize]] = ends[endsSize + 1]; segLen[ends[endsSize]] = ends[endsSize + 2]; }
+            loopLen = ends[--endsSize]; closedLoops = ends[--endsSize];
+        }
+
+        // An edge joining the two ends of a segment closes a loop; that is only legal as the very last line.
+        private void forceClosure(int e) {
+            int a = edgeN1[e], b = edgeN2[e];
+            if (state[e] != 0 || nodeFilled[a] != 1 || partner[a] != b) return; // stale: undone or already decided
+            if (segLen[a] != lineCount || !completesClues(e)) set(e, 2);
+        }
+
+        private boolean completesClues(int e) {
+            for (int i = edgeCellStart[e]; i < edgeCellStart[e + 1]; i++) { int k = edgeCells[i]; if (clue[k] >= 0 && cellFilled[k] + 1 != clue[k]) return false; }
+            for (int k = 0; k < cellCount; k++) {
+                if (clue[k] < 0 || cellFilled[k] == clue[k]) continue;
+                boolean borders = false;
+                for (int i = edgeCellStart[e]; i < edgeCellStart[e + 1]; i++) borders |= edgeCells[i] == k;
+                if (!borders) return false;
+            }
+            return true;
+        }
+
+        // --- PROPAGATION: THE TRAIL DOUBLES AS THE WORK QUEUE ---
+        // Clue and node forcing and loop closure alone, as if pairs were off. Only for a board with no unions
+        // yet (fresh from load() or reset()), since the edges it sets are not spread to their classes.
+        boolean propagatePlain() {
+            int[] pairs = pairParent;
+            pairParent = null;
+            try { return propagateAll(); } finally { pairParent = pairs; }
+        }
+
+        boolean propagateAll() {
+            int from = trailSize;
+            for (int n = 0; n < nodeCount; n++) if (!visitNode(n)) return false;
+            for (int k = 0; k < cellCount; k++) if (!visitCell(k)) return false;
+            return propagate(from);
+        }
+
+        boolean propagate(int from) {
+            for (int i = from; i < trailSize || closureCount > 0; i++) {
+                while (closureCount > 0) forceClosure(closures[--closureCount]);
+                if (i == trailSize) break;
+                int t = trail[i], e = t >>> 2;
+                if ((t & 3) == 3) { if (!visitEdge(pairLog[e * 3 + 1]) || !visitEdge(pairLog[e * 3 + 2])) return false; continue; }
+                if (visits != null) visits[e]++;
+                if (pairParent != null && !spreadPair(e)) return false;
+                if (!visitEdge(e)) return false;
+            }
+            return true;
+        }
+
+        private boolean visitEdge(int e) {
+            if (!visitNode(edgeN1[e]) || !visitNode(edgeN2[e])) return false;
+            for (int j = edgeCellStart[e]; j < edgeCellStart[e + 1]; j++) if (!visitCell(edgeCells[j])) return false;
+            return true;
+        }
+
+        private boolean visitNode(int n) {
+            if (!forceNode(n)) return false;
+            return pairParent == null || nodeFilled[n] >= 2 || nodeUnknown[n] < 2 || pairConstraint(nodeEdges, nodeEdgeStart[n], nodeEdgeStart[n + 1], nodeFilled[n] == 0 ? 1 | 1 << 2 : 1 << 1);
+        }
+
+        private boolean visitCell(int k) {
+            if (!forceCell(k)) return false;
+            return pairParent == null || clue[k] < 0 || cellUnknown[k] < 2 || pairConstraint(cellEdges, cellEdgeStart[k], cellEdgeStart[k + 1], 1 << (clue[k] - cellFilled[k]));
+        }
+
+        private boolean forceNode(int n) {
+            int f = nodeFilled[n], u = nodeUnknown[n];
+            if (openFilled != null) { f += openFilled[n]; u += openUnknown[n]; }
+            if (f > 2 || (f == 1 && u == 0)) return false;
+            if (u == 0) return true;
+            int want = f == 2 || (f == 0 && u == 1) ? 2 : (f == 1 && u == 1) ? 1 : 0;
+            if (want != 0) for (int i = nodeEdgeStart[n]; i < nodeEdgeStart[n + 1]; i++) if (state[nodeEdges[i]] == 0) set(nodeEdges[i], want);
+            return true;
+        }
+
+        private boolean forceCell(int k) {
+            int q = clue[k];
+            if (q < 0) return true;
+            int f = cellFilled[k], u = cellUnknown[k];
+            if (f > q || f + u < q) return false;
+            if (u == 0) return true;
+            int want = f == q ? 2 : f + u == q ? 1 : 0;
+            if (want != 0) for (int i = cellEdgeStart[k]; i < cellEdgeStart[k + 1]; i++) if (state[cellEdges[i]] == 0) set(cellEdges[i], want);
+            return true;
+        }
+
+        // --- EDGE PAIRS: "EXACTLY ONE OF" AND "BOTH OR NEITHER" AS UNION-FIND RELATIONS ---
+        // Tries every line/cross assignment of the classes among one constraint's unknown edges ('allowed' is a
+        // bitmask of legal line counts). A class with one feasible value is set; two classes whose values always
+        // agree, or always differ, are merged.
+        private boolean pairConstraint(int[] list, int from, int to, int allowed) {
+            int m = 0, k = 0;
+            for (int i = from; i < to; i++) {
+                int e = list[i];
+                if (state[e] != 0) continue;
+                int root = e, par = 0;
+                while (pairParent[root] != root) { par ^= pairParity[root]; root = pairParent[root]; }
+                int j = 0;
+                while (j < k && pairRoot[j] != root) j++;
+                if (j == k) pairRoot[k++] = root;
+                pairEdge[m] = e; pairSlot[m] = j; pairPar[m++] = par;
+            }
+            int can0 = 0, can1 = 0, same = 0, differ = 0;
+            boolean feasible = false;
+            for (int a = 0; a < 1 << k; a++) {
+                int sum = 0;
+                for (int i = 0; i < m; i++) sum += (a >>> pairSlot[i] & 1) ^ pairPar[i];
+                if ((allowed >>> sum & 1) == 0) continue;
+                feasible = true; can1 |= a; can0 |= ~a;
+                for (int j = 0; j < k; j++) for (int l = j + 1; l < k; l++) {
+                    if (((a >>> j ^ a >>> l) & 1) == 0) same |= 1 << (j * 4 + l); else differ |= 1 << (j * 4 + l);
+                }
+            }
+            if (!feasible) return false;
+            int fixed = ~(can0 & can1) & ((1 << k) - 1);
+            if (fixed != 0) {
+                for (int i = 0; i < m; i++) if ((fixed >>> pairSlot[i] & 1) != 0 && state[pairEdge[i]] == 0) set(pairEdge[i], ((can1 >>> pairSlot[i] & 1) ^ pairPar[i]) == 1 ? 1 : 2);
+                return true; // the changed edges revisit this constraint with fresh classes
+            }
+            for (int j = 0; j < k; j++) for (int l = j + 1; l < k; l++) {
+                int bit = 1 << (j * 4 + l);
+                if ((same & bit) != 0 && (differ & bit) != 0) continue;
+                int a = 0, b = 0;
+                while (pairSlot[a] != j) a++;
+                while (pairSlot[b] != l) b++;
+                if (!union(pairEdge[a], pairEdge[b], ((differ & bit) != 0 ? 1 : 0) ^ pairPar[a] ^ pairPar[b])) return false;
+            }
+            return true;
+        }
+
+        // Records line(a) ^ line(b) == rel; false if the classes already say otherwise.
+        private boolean union(int a, int b, int rel) {
+            int ra = a, rb = b, pa = 0, pb = 0;
+            while (pairParent[ra] != ra) { pa ^= pairParity[ra]; ra = pairParent[ra]; }
+            while (pairParent[rb] != rb) { pb ^= pairParity[rb]; rb = pairParent[rb]; }
+            if (ra == rb) return (pa ^ pb) == rel;
+            if (pairSize[ra] > pairSize[rb]) { int t = ra; ra = rb; rb = t; }
+            pairParent[ra] = rb; pairParity[ra] = (byte) (pa ^ pb ^ rel); pairSize[rb] += pairSize[ra];
+            int t = pairNext[ra]; pairNext[ra] = pairNext[rb]; pairNext[rb] = t;
+            if (pairLogSize * 3 + 3 > pairLog.length) pairLog = Arrays.copyOf(pairLog, pairLog.length * 2);
+            pairLog[pairLogSize * 3] = ra; pairLog[pairLogSize * 3 + 1] = a; pairLog[pairLogSize * 3 + 2] = b;
+            if (trailSize == trail.length) trail = Arrays.copyOf(trail, trail.length * 2);
+            trail[trailSize++] = pairLogSize++ << 2 | 3;
+            return true;
+        }
+
+        private void splitPair(int index) {
+            int child = pairLog[index * 3], root = pairParent[child];
+            int t = pairNext[child]; pairNext[child] = pairNext[root]; pairNext[root] = t;
+            pairSize[root] -= pairSize[child]; pairParent[child] = child; pairParity[child] = 0;
+            pairLogSize = index;
+        }
+
+        // A decided edge decides its whole class.
+        private boolean spreadPair(int e) {
+            if (pairNext[e] == e) return true;
+            int line = state[e] == 1 ? 1 : 0;
+            for (int r = e; pairParent[r] != r; r = pairParent[r]) line ^= pairParity[r];
+            for (int m = pairNext[e]; m != e; m = pairNext[m]) {
+                int v = line;
+                for (int r = m; pairParent[r] != r; r = pairParent[r]) v ^= pairParity[r];
+                int want = v == 1 ? 1 : 2;
+                if (state[m] == 0) set(m, want);
+                else if (state[m] != want) return false;
+            }
+            return true;
+        }
+
+        boolean testHypothesis(int e, int s) {
+            int mark = mark();
+            set(e, s);
+            boolean valid = propagate(mark) && !hasPrematureLoop();
+            undo(mark);
+            return valid;
+        }
+
+        // --- LOOP CHECKS (UNION-FIND OVER LINE EDGES) ---
+        private int find(int n) {
+            while (parent[n] != n) { parent[n] = parent[parent[n]]; n = parent[n]; }
+            return n;
+        }
+
+        // O(1) from the segment counters; a branched (already invalid) board falls back to a union-find scan.
+        boolean hasPrematureLoop() {
+            if (branches > 0) return scanForPrematureLoop();
+            if (closedLoops == 0) return false;
+            return closedLoops > 1 || loopLen < lineCount || !cluesSatisfied();
+        }
+
+        private boolean scanForPrematureLoop() {
+            for (int n = 0; n < nodeCount; n++) { parent[n] = n; compLines[n] = 0; }
+            int cycles = 0, cycleNode = -1;
+            for (int e = 0; e < edgeCount; e++) {
+                if (state[e] != 1) continue;
+                int a = find(edgeN1[e]), b = find(edgeN2[e]);
+                if (a == b) { compLines[a]++; cycles++; cycleNode = a; }
+                else { parent[a] = b; compLines[b] += compLines[a] + 1; }
+            }
+            if (cycles == 0) return false;
+            if (cycles > 1 || compLines[find(cycleNode)] < lineCount) return true;
+            return !cluesSatisfied();
+        }
+
+        boolean cluesSatisfied() {
+            for (int k = 0; k < cellCount; k++) if (clue[k] >= 0 && cellFilled[k] != clue[k]) return false;
+            return true;
+        }
+
+        boolean isSolved() {
+            if (lineCount == 0) return false;
+            for (int n = 0; n < nodeCount; n++) if (nodeFilled[n] != 0 && nodeFilled[n] != 2) return false;
+            return cluesSatisfied() && !hasPrematureLoop();
+        }
+    }
+
+    // ==========================================
+    // SOLUTION COUNTER (UNIQUENESS CHECK)
+    // ==========================================
+
+    // Propagation plus backtracking over a PackedBoard, stopping once 'limit' solutions are found.
+    // Branching follows open path ends first, so the loop check prunes dead branches early. Edge pairs are
+    // always on: they cut the search tree of a 10x10 puzzle by about 30x.
+    static class SolutionCounter {
+        private final PackedBoard board;
+        private final int limit;
+        private int found;
+        private byte[] firstSolution;
+        long searchNodes, maxSearchNodes = Long.MAX_VALUE, deadline;
+        boolean exhausted;
+
+        SolutionCounter(PackedBoard board, int limit) { this.board = board; this.limit = limit; board.enablePairs(); }
+
+        static int count(int[][] clues, int limit) { return new SolutionCounter(PackedBoard.fromClues(clues), limit).count(); }
+
+        static boolean isUnique(int[][] clues) { return count(clues, 2) == 1; }
+
+        int count() {
+            found = 0; firstSolution = null; searchNodes = 0; exhausted = false;
+            int mark = board.mark();
+            if (board.propagateAll()) search();
+            board.undo(mark);
+            return found;
+        }
+
+        byte[] firstSolution() { return firstSolution; }
+
+        private void search() {
+            if (++searchNodes > maxSearchNodes || (deadline != 0 && (searchNodes & 255) == 0 && System.nanoTime() - deadline > 0)) { exhausted = true; return; }
+            if (board.hasPrematureLoop()) return;
+            int e = pickEdge();
+            if (e < 0) {
+                if (board.isSolved() && found++ == 0) firstSolution = board.state.clone();
+                return;
+            }
+            for (int s = 1; s <= 2 && found < limit && !exhausted; s++) {
+                int mark = board.mark();
+                board.set(e, s);
+                if (board.propagate(mark)) search();
+                board.undo(mark);
+            }
+        }
+
+        private int pickEdge() {
+            for (int n = 0; n < board.nodeCount; n++) {
+                if (board.nodeFilled[n] != 1) continue;
+                for (int i = board.nodeEdgeStart[n]; i < board.nodeEdgeStart[n + 1]; i++) if (board.state[board.nodeEdges[i]] == 0) return board.nodeEdges[i];
+            }
+            int best = -1, bestScore = -1;
+            for (int k = 0; k < board.cellCount; k++) {
+                if (board.clue[k] < 0 || board.cellUnknown[k] == 0) continue;
+                int score = board.clue[k] * 4 - board.cellUnknown[k];
+                if (score > bestScore) { bestScore = score; best = k; }
+            }
+            if (best >= 0) {
+                for (int i = board.cellEdgeStart[best]; i < board.cellEdgeStart[best + 1]; i++) if (board.state[board.cellEdges[i]] == 0) return board.cellEdges[i];
+            }
+            for (int e = 0; e < board.edgeCount; e++) if (board.state[e] == 0) return e;
+            return -1;
+        }
+    }
+
+    // ==========================================
+    // PUZZLE GENERATOR
+    // ==========================================
+
+    // Grows a random hole-free region of cells, uses its boundary as the loop, then drops clues greedily
+    // while the puzzle stays unique. A clue that cannot be dropped now can never be dropped later
+    // (fewer clues only admit more loops), so each candidate is tested at most once unless a sibling
+    // in the same parallel batch failed the joint check that commits a whole batch's removable clues.
+    // Checks that blow the search budget keep their clue.
+    static class PuzzleGenerator {
+        private static final long SEARCH_BUDGET = 20000;
+        private static final int[] RING_DR = {-1, -1, 0, 1, 1, 1, 0, -1};
+        private static final int[] RING_DC = {0, 1, 1, 1, 0, -1, -1, -1};
+
+        private final int rows, cols;
+        private final Random rng;
+        private final boolean parallelRemoval;
+
+        PuzzleGenerator(int rows, int cols, long seed) { this(rows, cols, seed, true); }
+
+        PuzzleGenerator(int rows, int cols, long seed, boolean parallelRemoval) {
+            this.rows = rows; this.cols = cols; this.rng = new Random(seed); this.parallelRemoval = parallelRemoval;
+        }
+
+        // One generator per puzzle across the pool; each removes its clues sequentially so pool tasks never wait on each other.
+        static List<int[][]> generateMany(int rows, int cols, int count, long seed) {
+            List<Callable<int[][]>> tasks = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long puzzleSeed = seed + 0x9E3779B97F4A7C15L * (i + 1);
+                tasks.add(() -> new PuzzleGenerator(rows, cols, puzzleSeed, false).generate());
+            }
+            List<int[][]> puzzles = new ArrayList<>();
+            try {
+                for (Future<int[][]> f : WORKERS.invokeAll(tasks)) puzzles.add(f.get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+            return puzzles;
+        }
+
+        int[][] generate() {
+            while (true) {
+                int[][] clues = cluesOf(growLoop());
+                if (SolutionCounter.count(clues, 2) != 1) continue;
+                removeClues(clues);
+                return clues;
+            }
+        }
+
+        // --- LOOP GROWTH ---
+        boolean[][] growLoop() {
+            boolean[][] inside = new boolean[rows][cols];
+            int target = Math.max(1, (int) (rows * cols * (0.45 + 0.2 * rng.nextDouble())));
+            inside[rng.nextInt(rows)][rng.nextInt(cols)] = true;
+            List<int[]> candidates = new ArrayList<>();
+            for (int size = 1; size < target; size++) {
+                candidates.clear();
+                for (int r = 0; r < rows; r++) for (int c = 0; c < cols; c++) if (!inside[r][c] && canAdd(inside, r, c)) candidates.add(new int[]{r, c});
+                if (candidates.isEmpty()) break;
+                int[] pick = candidates.get(rng.nextInt(candidates.size()));
+                inside[pick[0]][pick[1]] = true;
+            }
+            return inside;
+        }
+
+        private static boolean in(boolean[][] inside, int r, int c) {
+            return r >= 0 && r < inside.length && c >= 0 && c < inside[0].length && inside[r][c];
+        }
+
+        // Adding the cell keeps the region a single hole-free loop iff its 8-ring holds exactly one run of
+        // inside cells and no inside diagonal is cut off from both orthogonal neighbours (a degree-4 node).
+        static boolean canAdd(boolean[][] inside, int r, int c) {
+            int runs = 0;
+            for (int i = 0; i < 8; i++) {
+                boolean cur = in(inside, r + RING_DR[i], c + RING_DC[i]);
+                boolean prev = in(inside, r + RING_DR[(i + 7) % 8], c + RING_DC[(i + 7) % 8]);
+                if (cur && !prev) runs++;
+                if (cur && (i & 1) == 1 && !prev && !in(inside, r + RING_DR[(i + 1) % 8], c + RING_DC[(i + 1) % 8])) return false;
+            }
+            return runs == 1;
+        }
+
+        static int[][] cluesOf(boolean[][] inside) {
+            int rows = inside.length, cols = inside[0].length;
+            int[][] clues = new int[rows][cols];
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    int n = 0;
+                    for (int i = 0; i < 8; i += 2) if (in(inside, r + RING_DR[i], c + RING_DC[i]) != inside[r][c]) n++;
+                    clues[r][c] = n;
+                }
+            }
+            return clues;
+        }
+
+        // --- UNIQUENESS-GUARANTEED CLUE REMOVAL ---
+        private void removeClues(int[][] clues) {
+            List<Integer> order = new ArrayList<>();
+            for (int k = 0; k < rows * cols; k++) order.add(k);
+            Collections.shuffle(order, rng);
+            Deque<Integer> pending = new ArrayDeque<>(order);
+            int batchSize = parallelRemoval ? Runtime.getRuntime().availableProcessors() : 1;
+
+            while (!pending.isEmpty()) {
+                List<Integer> batch = new ArrayList<>();
+                while (batch.size() < batchSize && !pending.isEmpty()) batch.add(pending.poll());
+                boolean[] removable = new boolean[batch.size()];
+                if (batch.size() == 1) {
+                    removable[0] = isUniqueWithout(clues, batch);
+                } else {
+                    List<Callable<Boolean>> tasks = new ArrayList<>();
+                    for (int k : batch) tasks.add(() -> isUniqueWithout(clues, List.of(k)));
+                    try {
+                        List<Future<Boolean>> results = WORKERS.invokeAll(tasks);
+                        for (int i = 0; i < removable.length; i++) removable[i] = results.get(i).get();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (ExecutionException ex) {
+                        throw new IllegalStateException(ex.getCause());
+                    }
+                }
+                List<Integer> found = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) if (removable[i]) found.add(batch.get(i));
+                if (found.isEmpty()) continue;
+                // Clues removable one at a time usually stay removable together; one more check commits them all.
+                if (found.size() > 1 && isUniqueWithout(clues, found)) { for (int k : found) clues[k / cols][k % cols] = -1; continue; }
+                int k = found.get(0);
+                clues[k / cols][k % cols] = -1;
+                for (int i = found.size() - 1; i > 0; i--) pending.addFirst(found.get(i));
+            }
+        }
+
+        private boolean isUniqueWithout(int[][] clues, List<Integer> removed) {
+            int[][] trial = new int[rows][];
+            for (int r = 0; r < rows; r++) trial[r] = clues[r].clone();
+            for (int k : removed) trial[k / cols][k % cols] = -1;
+            SolutionCounter counter = new SolutionCounter(PackedBoard.fromClues(trial), 2);
+            counter.maxSearchNodes = SEARCH_BUDGET;
+            return counter.count() == 1 && !counter.exhausted;
+        }
+    }
+
+    // ==========================================
+    // DIFFICULTY GRADER
+    // ==========================================
+
+    // Always applies the weakest tier that still makes progress and escalates only when every lower tier is
+    // stuck, so the hardest tier used is the hardest reasoning the puzzle demands. Patterns run on a Bitboard
+    // over a mirror Board; every other tier runs on a PackedBoard.
+    static class DifficultyGrader {
+        enum Tier {
+            PATTERNS("Patterns"), BASIC("Basic"), COLOURING("Colouring"), LOOKAHEAD("Lookahead"), DEEP_LOOKAHEAD("Deep lookahead"), UNSOLVED("Needs search");
+
+            final String label;
+            Tier(String label) { this.label = label; }
+        }
+
+        static class Grade {
+            Tier hardest = Tier.PATTERNS;
+            boolean solved;
+            long nanos;
+            final int[] deductions = new int[Tier.values().length];
+            final long[] work = new long[Tier.values().length]; // rule checks, or hypotheses tested for the lookahead tiers
+        }
+
+        static final long DEEP_BUDGET = 200000; // hypotheses per deep-lookahead step before giving up
+
+        private final PackedBoard pb;
+        private final Board board;
+        private final Bitboard bits;
+        private final int[] parent, parity;
+        private final Grade grade = new Grade();
+        private int propagated;
+
+        DifficultyGrader(int[][] clues) {
+            pb = PackedBoard.fromClues(clues);
+            board = new Board(clues);
+            bits = Bitboard.attach(board.cells, board.edges);
+            parent = new int[pb.cellCount + 1]; parity = new int[pb.cellCount + 1];
+        }
+
+        static Grade grade(int[][] clues) { return new DifficultyGrader(clues).run(); }
+
+        // One task per puzzle; results come back in corpus order.
+        static List<Grade> gradeAll(List<int[][]> corpus) {
+            List<Callable<Grade>> tasks = new ArrayList<>();
+            for (int[][] clues : corpus) tasks.add(() -> grade(clues));
+            List<Grade> grades = new ArrayList<>();
+            try {
+                for (Future<Grade> f : WORKERS.invokeAll(tasks)) grades.add(f.get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+            return grades;
+        }
+
+        Grade run() {
+            long start = System.nanoTime();
+            grade.deductions[Tier.PATTERNS.ordinal()] += patterns(); // weakest tier first, even before the first propagation
+            int patterned = pb.mark();
+            boolean consistent = pb.propagateAll();
+            grade.deductions[Tier.BASIC.ordinal()] += pb.mark() - patterned;
+            if (pb.mark() > patterned) grade.hardest = Tier.BASIC;
+            propagated = pb.mark();
+            while (consistent && !pb.isSolved()) {
+                Tier used = null;
+                for (Tier t : Tier.values()) {
+                    if (t == Tier.UNSOLVED) break;
+                    long before = pb.mark();
+                    int result = step(t);
+                    if (result < 0) { consistent = false; break; }
+                    if (result == 0) continue;
+                    if (t != Tier.BASIC) grade.deductions[t.ordinal()] += pb.mark() - before;
+                    used = t; break;
+                }
+                if (used == null) break;
+                if (used.ordinal() > grade.hardest.ordinal()) grade.hardest = used;
+            }
+            grade.solved = consistent && pb.isSolved();
+            if (!grade.solved) grade.hardest = Tier.UNSOLVED;
+            grade.nanos = System.nanoTime() - start;
+            return grade;
+        }
+
+        // Deductions made by one application of the tier, or -1 if it found the board contradictory.
+        private int step(Tier t) {
+            switch (t) {
+                case PATTERNS: return patterns();
+                case BASIC: {
+                    int from = propagated, before = pb.mark();
+                    if (!pb.propagate(from)) return -1;
+                    grade.work[t.ordinal()] += pb.mark() - from;
+                    propagated = pb.mark();
+                    grade.deductions[t.ordinal()] += pb.mark() - before;
+                    return pb.mark() - before;
+                }
+                case COLOURING: return colouring();
+                case LOOKAHEAD: return lookahead();
+                default: return deepLookahead();
+            }
+        }
+
+        private int patterns() {
+            for (Edge e : board.edges) if (e.state != pb.state[e.id]) e.setState(pb.state[e.id]);
+            int found = 0;
+            for (int r = 0; r < bits.rows; r++) for (int c = 0; c < bits.cols; c++) {
+                long w = bits.window(r, c);
+                for (long[] pat : Bitboard.PATTERNS) {
+                    grade.work[Tier.PATTERNS.ordinal()]++;
+                    if ((w & pat[0]) != pat[1]) continue;
+                    for (int s = 0; s < 12; s++) {
+                        int id = (pat[2] & (1 << s)) != 0 ? bits.edgeAt(r, c, s) : -1;
+                        if (id >= 0 && pb.state[id] == 0) { pb.set(id, 1); board.edges.get(id).setState(1); found++; }
+                    }
+                }
+            }
+            return found;
+        }
+
+        // --- COLOURING: EVERY CELL IS INSIDE OR OUTSIDE; A LINE SEPARATES DIFFERENT COLOURS ---
+        // Cells (plus one virtual outside cell) are joined by a parity union-find over the decided edges.
+        private int find(int k) {
+            if (parent[k] == k) return k;
+            int root = find(parent[k]);
+            parity[k] ^= parity[parent[k]];
+            return parent[k] = root;
+        }
+
+        private int far(int e, int k) {
+            for (int i = pb.edgeCellStart[e]; i < pb.edgeCellStart[e + 1]; i++) if (pb.edgeCells[i] != k) return pb.edgeCells[i];
+            return pb.cellCount;
+        }
+
+        // 0 = same colour, 1 = different, -1 = not yet related.
+        private int relation(int a, int b) { return find(a) == find(b) ? parity[a] ^ parity[b] : -1; }
+
+        private int colouring() {
+            int outside = pb.cellCount;
+            for (int k = 0; k <= outside; k++) { parent[k] = k; parity[k] = 0; }
+            for (int e = 0; e < pb.edgeCount; e++) {
+                if (pb.state[e] == 0) continue;
+                int a = pb.edgeCells[pb.edgeCellStart[e]], b = far(e, a), ra = find(a), rb = find(b);
+                int diff = (pb.state[e] == 1 ? 1 : 0) ^ parity[a] ^ parity[b];
+                if (ra == rb) { if (diff != 0) return -1; continue; }
+                parent[ra] = rb; parity[ra] = diff;
+            }
+            long checks = 0;
+            int found = 0;
+            for (int e = 0; e < pb.edgeCount; e++) {
+                if (pb.state[e] != 0) continue;
+                checks++;
+                int a = pb.edgeCells[pb.edgeCellStart[e]], rel = relation(a, far(e, a));
+                if (rel >= 0) { pb.set(e, rel == 1 ? 1 : 2); found++; }
+            }
+            // Two unknown sides of a clue whose far cells share a colour are both lines or both crosses;
+            // far cells of opposite colours give exactly one line between the two sides.
+            for (int k = 0; k < pb.cellCount && found == 0; k++) {
+                int q = pb.clue[k], u = pb.cellUnknown[k], need = q - pb.cellFilled[k];
+                if (q < 0 || u < 2) continue;
+                int s0 = pb.cellEdgeStart[k];
+                for (int i = 0; i < 4; i++) for (int j = i + 1; j < 4; j++) {
+                    int ei = pb.cellEdges[s0 + i], ej = pb.cellEdges[s0 + j];
+                    if (pb.state[ei] != 0 || pb.state[ej] != 0) continue;
+                    checks++;
+                    int rel = relation(far(ei, k), far(ej, k));
+                    if (rel < 0) continue;
+                    int want = 0, rest = 0;
+                    if (rel == 0 && need < 2) want = 2;
+                    else if (rel == 0 && u - 2 < need) want = 1;
+                    else if (rel == 1) rest = need - 1 == 0 ? 2 : need - 1 == u - 2 ? 1 : 0;
+                    if (want != 0) { pb.set(ei, want); pb.set(ej, want); found += 2; }
+                    for (int m = 0; m < 4 && rest != 0; m++) {
+                        int em = pb.cellEdges[s0 + m];
+                        if (em != ei && em != ej && pb.state[em] == 0) { pb.set(em, rest); found++; }
+                    }
+                    if (found > 0) break;
+                }
+            }
+            grade.work[Tier.COLOURING.ordinal()] += checks;
+            return found;
+        }
+
+        private int lookahead() {
+            for (int e = 0; e < pb.edgeCount; e++) {
+                if (pb.state[e] != 0) continue;
+                grade.work[Tier.LOOKAHEAD.ordinal()] += 2;
+                if (!pb.testHypothesis(e, 1)) { pb.set(e, 2); return 1; }
+                if (!pb.testHypothesis(e, 2)) { pb.set(e, 1); return 1; }
+            }
+            return 0;
+        }
+
+        // Assumes a state, runs one-level lookahead to its own fixpoint on top of it, and rejects the state if that fails.
+        private int deepLookahead() {
+            long budget = DEEP_BUDGET;
+            for (int e = 0; e < pb.edgeCount && budget > 0; e++) {
+                if (pb.state[e] != 0) continue;
+                for (int s = 1; s <= 2 && budget > 0; s++) {
+                    int mark = pb.mark();
+                    pb.set(e, s);
+                    boolean valid = pb.propagate(mark) && !pb.hasPrematureLoop();
+                    for (boolean progress = valid; progress && valid && budget > 0; ) {
+                        progress = false;
+                        for (int f = 0; f < pb.edgeCount && valid && budget > 0; f++) {
+                            if (pb.state[f] != 0) continue;
+                            budget -= 2;
+                            int forced = !pb.testHypothesis(f, 1) ? 2 : !pb.testHypothesis(f, 2) ? 1 : 0;
+                            if (forced == 0) continue;
+                            int inner = pb.mark();
+                            pb.set(f, forced);
+                            valid = pb.propagate(inner) && !pb.hasPrematureLoop();
+                            progress = true;
+                        }
+                    }
+                    pb.undo(mark);
+                    if (!valid) {
+                        grade.work[Tier.DEEP_LOOKAHEAD.ordinal()] += DEEP_BUDGET - budget;
+                        pb.set(e, 3 - s);
+                        return 1;
+                    }
+                }
+            }
+            grade.work[Tier.DEEP_LOOKAHEAD.ordinal()] += DEEP_BUDGET - budget;
+            return 0;
+        }
+
+        // Hardest-tier histogram plus mean deductions, work and time per puzzle.
+        static String summarize(List<Grade> grades) {
+            StringBuilder sb = new StringBuilder();
+            int[] histogram = new int[Tier.values().length];
+            long nanos = 0;
+            for (Grade g : grades) { histogram[g.hardest.ordinal()]++; nanos += g.nanos; }
+            int n = Math.max(1, grades.size());
+            sb.append(String.format("%-16s %8s %12s %14s%n", "tier", "hardest", "deductions", "work"));
+            for (Tier t : Tier.values()) {
+                double deduced = 0, work = 0;
+                for (Grade g : grades) { deduced += g.deductions[t.ordinal()]; work += g.work[t.ordinal()]; }
+                sb.append(String.format("%-16s %8d %12.1f %14.1f%n", t.label, histogram[t.ordinal()], deduced / n, work / n));
+            }
+            sb.append(String.format("%d puzzles, %.2f ms per puzzle%n", grades.size(), nanos / 1e6 / n));
+            return sb.toString();
+        }
+    }
+
+    // ==========================================
+    // PERSISTENT SOLUTION CACHE
+    // ==========================================
+
+    // Append-only memory-mapped file of solved puzzles keyed by a 64-bit hash of the clue grid.
+    // Header: magic, version, committed end offset. Record: length, key, rows, cols, clues (+1 per cell),
+    // flags (1 = solved, 2 = unique), solution state per edge id if solved, then the deduction trace from the
+    // empty board as (edge id, rule ordinal << 2 | state). Anything past the committed end is ignored on open,
+    // so a crash mid-append loses only that record. The in-memory index is rebuilt by one scan on open and
+    // kept in access order; when the file is full the most recently used half is copied into a fresh file
+    // that atomically replaces the old one.
+    static class SolutionCache {
+        private static final int MAGIC = 0x4C4F4F50, VERSION = 1, HEADER = 16;
+        static final long SOLVE_MILLIS = 2000, SOLVE_NODES = 200000;
+        private static SolutionCache shared;
+        private static boolean sharedOpened;
+
+        static class Entry {
+            final byte[] solution; // state per edge id, or null when no loop satisfies the clues
+            final boolean unique;
+            final boolean proven; // false when solve() ran out of budget; such entries are never stored
+            final int[] traceEdge;
+            final byte[] traceState, traceRule;
+
+            Entry(byte[] solution, boolean unique, int[] traceEdge, byte[] traceState, byte[] traceRule) {
+                this(solution, unique, true, traceEdge, traceState, traceRule);
+            }
+
+            Entry(byte[] solution, boolean unique, boolean proven, int[] traceEdge, byte[] traceState, byte[] traceRule) {
+                this.solution = solution; this.unique = unique; this.proven = proven;
+                this.traceEdge = traceEdge; this.traceState = traceState; this.traceRule = traceRule;
+            }
+
+            // Lines are exactly the cached loop; with a unique solution that is the only way to win.
+            boolean matches(List<Edge> edges) {
+                if (solution == null) return false;
+                for (Edge e : edges) if ((e.state == 1) != (solution[e.id] == 1)) return false;
+                return true;
+            }
+
+            // No placed line or cross contradicts the cached solution, so the trace still applies.
+            boolean consistent(List<Edge> edges) {
+                if (solution == null || !unique) return false;
+                for (Edge e : edges) if (e.state != 0 && e.state != solution[e.id]) return false;
+                return true;
+            }
+
+            // Trace steps for edges the board has not filled in yet, in their original order.
+            List<Deduction> remaining(List<Edge> edges) {
+                List<Deduction> steps = new ArrayList<>();
+                for (int i = 0; i < traceEdge.length; i++) {
+                    Edge e = edges.get(traceEdge[i]);
+                    if (e.state == 0) steps.add(new Deduction(e, traceState[i], Rule.values()[traceRule[i]]));
+                }
+                return steps;
+            }
+        }
+
+        private final Path path;
+        private final int capacity;
+        private MappedByteBuffer buf;
+        private int end;
+        private final LinkedHashMap<Long, Integer> index = new LinkedHashMap<>(64, 0.75f, true);
+
+        SolutionCache(Path path, int capacity) throws IOException {
+            this.path = path; this.capacity = capacity;
+            map();
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) { buf.putInt(0, MAGIC); buf.putInt(4, VERSION); buf.putInt(8, HEADER); }
+            end = Math.min(Math.max(buf.getInt(8), HEADER), capacity);
+            for (int pos = HEADER; pos + 4 <= end; ) {
+                int len = buf.getInt(pos);
+                if (len < 16 || pos + len > end) { end = pos; break; }
+                index.put(buf.getLong(pos + 4), pos);
+                pos += len;
+            }
+            buf.putInt(8, end);
+        }
+
+        // The GUI's cache, opt-in: only when -Dloopy.cache names its file. Null otherwise or if it cannot be opened.
+        static synchronized SolutionCache shared() {
+            if (!sharedOpened) {
+                sharedOpened = true;
+                String file = System.getProperty("loopy.cache");
+                if (file == null) return null;
+                try {
+                    Path p = Paths.get(file);
+                    if (p.getParent() != null) Files.createDirectories(p.getParent());
+                    shared = new SolutionCache(p, Integer.getInteger("loopy.cacheBytes", 16 << 20));
+                } catch (IOException | RuntimeException ex) {
+                    shared = null;
+                }
+            }
+            return shared;
+        }
+
+        private void map() throws IOException {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+        }
+
+        static long key(int[][] clues) {
+            long h = 0xcbf29ce484222325L;
+            h = (h ^ clues.length) * 0x100000001b3L;
+            h = (h ^ clues[0].length) * 0x100000001b3L;
+            for (int[] row : clues) for (int v : row) h = (h ^ (v + 1)) * 0x100000001b3L;
+            return h;
+        }
+
+        synchronized Entry get(int[][] clues) {
+            long key = key(clues);
+            Integer pos = index.get(key);
+            if (pos == null) return null;
+            int rows = clues.length, cols = clues[0].length, p = pos + 12;
+            if (buf.getShort(p) != rows || buf.getShort(p + 2) != cols) return null;
+            p += 4;
+            for (int[] row : clues) for (int v : row) if (buf.get(p++) != v + 1) return null; // hash collision
+
+            int flags = buf.get(p++);
+            byte[] solution = null;
+            if ((flags & 1) != 0) {
+                solution = new byte[(rows + 1) * cols + rows * (cols + 1)];
+                buf.get(p, solution); p += solution.length;
+            }
+            int n = buf.getInt(p); p += 4;
+            int[] traceEdge = new int[n];
+            byte[] traceState = new byte[n], traceRule = new byte[n];
+            for (int i = 0; i < n; i++, p += 5) {
+                traceEdge[i] = buf.getInt(p);
+                int packed = buf.get(p + 4);
+                traceState[i] = (byte) (packed & 3); traceRule[i] = (byte) (packed >>> 2);
+            }
+            return new Entry(solution, (flags & 2) != 0, traceEdge, traceState, traceRule);
+        }
 
-        public Node(int r, int c, int id) { this.r = r; this.c = c; this.id = id; }
-        public void initCache() { this.unknownCount = connectedEdges.size(); }
+        synchronized void put(int[][] clues, Entry entry) throws IOException {
+            int rows = clues.length, cols = clues[0].length;
+            int len = 4 + 8 + 4 + rows * cols + 1 + (entry.solution == null ? 0 : entry.solution.length) + 4 + 5 * entry.traceEdge.length;
+            if (len > (capacity - HEADER) / 2) return; // never worth evicting everything else for
+            if (end + len > capacity) compact(capacity / 2 - len);
+
+            int p = end;
+            buf.putInt(p, len); buf.putLong(p + 4, key(clues)); buf.putShort(p + 12, (short) rows); buf.putShort(p + 14, (short) cols);
+            p += 16;
+            for (int[] row : clues) for (int v : row) buf.put(p++, (byte) (v + 1));
+            buf.put(p++, (byte) ((entry.solution != null ? 1 : 0) | (entry.unique ? 2 : 0)));
+            if (entry.solution != null) { buf.put(p, entry.solution); p += entry.solution.length; }
+            buf.putInt(p, entry.traceEdge.length); p += 4;
+            for (int i = 0; i < entry.traceEdge.length; i++, p += 5) {
+                buf.putInt(p, entry.traceEdge[i]);
+                buf.put(p + 4, (byte) (entry.traceRule[i] << 2 | entry.traceState[i]));
+            }
+            index.put(key(clues), end);
+            end += len;
+            buf.putInt(8, end); // commit point
+        }
 
-        public void updateCache(int oldState, int newState) {
-            if (oldState == 0) unknownCount--; else if (oldState == 1) filledCount--; else if (oldState == 2) crossCount--;
-            if (newState == 0) unknownCount++; else if (newState == 1) filledCount++; else if (newState == 2) crossCount++;
+        // Keeps the most recently used records that fit in 'budget' bytes.
+        private void compact(int budget) throws IOException {
+            List<Integer> recent = new ArrayList<>(index.values());
+            Collections.reverse(recent);
+            List<Integer> keep = new ArrayList<>();
+            int used = 0;
+            for (int pos : recent) {
+                int len = buf.getInt(pos);
+                if (used + len > budget) break;
+                keep.add(pos); used += len;
+            }
+            Collections.reverse(keep); // oldest first, so access order survives the rebuild
+
+            ByteBuffer out = ByteBuffer.allocate(HEADER + used);
+            out.putInt(MAGIC).putInt(VERSION).putInt(HEADER + used).putInt(0);
+            index.clear();
+            for (int pos : keep) {
+                int len = buf.getInt(pos);
+                index.put(buf.getLong(pos + 4), out.position());
+                out.put(buf.slice(pos, len));
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(tmp, out.array());
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            map();
+            end = HEADER + used;
+        }
+
+        // Deduction and search share one wall-clock budget; the search also stops after SOLVE_NODES nodes. The
+        // search starts from the bare clues, so the stored solution and uniqueness never rest on a deduction
+        // tier, and the trace is cut at its first step that disagrees with a unique solution.
+        static Entry solve(int[][] clues) {
+            long deadline = System.nanoTime() + SOLVE_MILLIS * 1_000_000L;
+            Board board = new Board(clues);
+            ComputerPartner ai = new ComputerPartner();
+            ai.deadline = deadline;
+            List<Deduction> trace = ai.solveToFixpoint(board.cells, board.nodes, board.edges);
+            SolutionCounter counter = new SolutionCounter(PackedBoard.fromClues(clues), 2);
+            counter.maxSearchNodes = SOLVE_NODES; counter.deadline = deadline;
+            int found = counter.count();
+            boolean proven = !counter.exhausted;
+            byte[] solution = found > 0 ? counter.firstSolution() : null;
+            int sound = 0;
+            if (proven && found == 1) while (sound < trace.size() && trace.get(sound).state == solution[trace.get(sound).edge.id]) sound++;
+            trace = trace.subList(0, sound);
+            int[] traceEdge = new int[trace.size()];
+            byte[] traceState = new byte[trace.size()], traceRule = new byte[trace.size()];
+            for (int i = 0; i < trace.size(); i++) {
+                Deduction d = trace.get(i);
+                traceEdge[i] = d.edge.id; traceState[i] = (byte) d.state; traceRule[i] = (byte) d.rule.ordinal();
+            }
+            return new Entry(solution, proven && found == 1, proven, traceEdge, traceState, traceRule);
+        }
+
+        // Cached entry for these clues, solving and appending it first if this puzzle has not been seen.
+        // A result the budget cut short is returned but not stored, so it is never remembered as fact.
+        Entry lookupOrSolve(int[][] clues) {
+            Entry entry = get(clues);
+            if (entry != null) return entry;
+            entry = solve(clues);
+            if (!entry.proven) return entry;
+            try { put(clues, entry); } catch (IOException ex) { /* still usable for this session */ }
+            return entry;
         }
     }
 
-    static class Cell {
-        int r, c, clue;
-        List<Edge> edges = new ArrayList<>();
-        int filledCount = 0;
-        int crossCount = 0;
-        int unknownCount = 4;
+    // ==========================================
+    // TILED OUT-OF-CORE SOLVER
+    // ==========================================
 
-        public Cell(int r, int c, int clue) { this.r = r; this.c = c; this.clue = clue; }
+    // Solves boards far too large for the object model (1000x1000 and up) in a bounded heap. Clues (clue + 1
+    // per cell) and states (one byte per global edge id) stay in memory-mapped files under 'dir'; only tiles
+    // of at most tile x tile cells are unpacked, into PackedBoards pooled per worker thread. A tile's border
+    // nodes are open: spokes leaving the tile belong to the neighbour and only count towards the degree.
+    // Tiles propagate (optionally with one-edge lookahead) in sweeps, and a tile that settles an edge on its
+    // border wakes its eight neighbours for the next sweep. States only go from unknown to decided and every
+    // tile rule stays sound on partial knowledge, so concurrent tiles may read a border mid-write. Edges on a
+    // tile's outline belong to both tiles beside them, so two tiles can write the same byte in one sweep; on a
+    // solvable board sound rules only ever write it the same decided value. A whole byte per edge makes each
+    // write one plain store, where packed bits would need a read-modify-write that could lose a neighbouring
+    // edge's update. A final union-find over the mapped lines checks for a single loop, and its clue and
+    // degree counts reject whatever conflicting writes an unsolvable puzzle leaves behind. Reopening 'dir'
+    // resumes from its states.
+    static class TiledSolver implements AutoCloseable {
+        static final int TILE = 32;
+        private static final byte QUIET = 0, BORDER = 1, CONTRADICTION = 2;
+
+        // A file mapped in 1 GB windows, so its size is bounded by the disk rather than by an int.
+        static class MappedBytes implements AutoCloseable {
+            private static final int SHIFT = 30, MASK = (1 << SHIFT) - 1;
+            private final FileChannel ch;
+            private final MappedByteBuffer[] maps;
+
+            MappedBytes(Path path, long size) throws IOException {
+                ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                maps = new MappedByteBuffer[(int) ((size + MASK) >>> SHIFT)];
+                for (int i = 0; i < maps.length; i++) maps[i] = ch.map(FileChannel.MapMode.READ_WRITE, (long) i << SHIFT, Math.min(1L << SHIFT, size - ((long) i << SHIFT)));
+            }
 
-        public void updateCache(int oldState, int newState) {
-            if (oldState == 0) unknownCount--; else if (oldState == 1) filledCount--; else if (oldState == 2) crossCount--;
-            if (newState == 0) unknownCount++; else if (newState == 1) filledCount++; else if (newState == 2) crossCount++;
+            byte get(long i) { return maps[(int) (i >>> SHIFT)].get((int) (i & MASK)); }
+            void put(long i, byte v) { maps[(int) (i >>> SHIFT)].put((int) (i & MASK), v); }
+            int getInt(long i) { return maps[(int) (i >>> SHIFT)].getInt((int) (i & MASK)); } // i % 4 == 0 never straddles
+            void putInt(long i, int v) { maps[(int) (i >>> SHIFT)].putInt((int) (i & MASK), v); }
+
+            public void close() throws IOException { ch.close(); }
         }
 
-        public Edge getTop() { for(Edge e:edges) if(e.isHorizontal && e.n1.r == r) return e; return null; }
-        public Edge getBottom() { for(Edge e:edges) if(e.isHorizontal && e.n1.r == r+1) return e; return null; }
-        public Edge getLeft() { for(Edge e:edges) if(!e.isHorizontal && e.n1.c == c) return e; return null; }
-        public Edge getRight() { for(Edge e:edges) if(!e.isHorizontal && e.n1.c == c+1) return e; return null; }
-    }
+        static class Report {
+            int sweeps;
+            long tileSolves, unknown, lines, components, badNodes, badClues, nanos;
+            boolean contradiction;
 
-    static class Edge {
-        Node n1, n2;
-        List<Cell> connectedCells = new ArrayList<>();
-        boolean isHorizontal;
-        int state; 
-        private static final int HIT_TOLERANCE = 15; 
+            boolean solved() { return !contradiction && unknown == 0 && components == 1 && badNodes == 0 && badClues == 0; }
 
-        public Edge(Node n1, Node n2, boolean isHorizontal) {
-            this.n1 = n1; this.n2 = n2; this.isHorizontal = isHorizontal; this.state = 0;
+            @Override
+            public String toString() {
+                String outcome = contradiction ? "contradiction" : solved() ? "solved" : unknown > 0 ? "stuck" : "invalid";
+                return String.format("%s: %d sweeps, %d tile solves, %d lines, %d unknown, %d loops, %d bad nodes, %d bad clues, %.1f ms",
+                        outcome, sweeps, tileSolves, lines, unknown, components, badNodes, badClues, nanos / 1e6);
+            }
         }
 
-        public void setState(int newState) {
-            if (this.state == newState) return;
-            int oldState = this.state;
-            this.state = newState;
-            n1.updateCache(oldState, newState);
-            n2.updateCache(oldState, newState);
-            for (Cell c : connectedCells) c.updateCache(oldState, newState);
+        final int rows, cols, tile, tileRows, tileCols;
+        final long edgeCount, nodeCount;
+        private final Path dir;
+        private final MappedBytes clues, states;
+        private final long[] awake; // one bit per tile
+        private final ThreadLocal<Map<Integer, PackedBoard>> boards = ThreadLocal.withInitial(HashMap::new);
+
+        TiledSolver(Path dir, int rows, int cols, int tile) throws IOException {
+            if (rows < 1 || cols < 1 || tile < 1 || (long) (rows + 1) * (cols + 1) > Integer.MAX_VALUE) throw new IllegalArgumentException("Unsupported board " + rows + "x" + cols);
+            this.dir = dir; this.rows = rows; this.cols = cols; this.tile = tile;
+            tileRows = (rows + tile - 1) / tile; tileCols = (cols + tile - 1) / tile;
+            nodeCount = (long) (rows + 1) * (cols + 1);
+            edgeCount = (long) (rows + 1) * cols + (long) rows * (cols + 1);
+            Files.createDirectories(dir);
+            clues = new MappedBytes(dir.resolve("clues.bin"), (long) rows * cols);
+            states = new MappedBytes(dir.resolve("edges.bin"), edgeCount);
+            awake = new long[(tileRows * tileCols + 63) / 64];
         }
 
-        public boolean contains(int x, int y, int gap, int offsetX, int offsetY) {
-            int x1 = n1.c * gap + offsetX; int y1 = n1.r * gap + offsetY;
-            if (isHorizontal) return x >= x1 + 10 && x <= x1 + gap - 10 && y >= y1 - HIT_TOLERANCE && y <= y1 + HIT_TOLERANCE;
-            else return x >= x1 - HIT_TOLERANCE && x <= x1 + HIT_TOLERANCE && y >= y1 + 10 && y <= y1 + gap - 10;
+        long hEdge(int r, int c) { return (long) r * cols + c; }
+        long vEdge(int r, int c) { return (long) (rows + 1) * cols + (long) r * (cols + 1) + c; }
+
+        int clue(int r, int c) { return clues.get((long) r * cols + c) - 1; }
+        void setClue(int r, int c, int v) { clues.put((long) r * cols + c, (byte) (v + 1)); }
+        int state(long e) { return states.get(e); }
+
+        Report solve(boolean lookahead) throws IOException, InterruptedException, ExecutionException {
+            long start = System.nanoTime();
+            Report report = new Report();
+            Arrays.fill(awake, -1L);
+            int threads = Runtime.getRuntime().availableProcessors();
+            while (!report.contradiction) {
+                int[] batch = takeAwake();
+                if (batch.length == 0) break;
+                report.sweeps++; report.tileSolves += batch.length;
+                byte[] outcome = new byte[batch.length];
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (int w = 0; w < threads; w++) {
+                    int first = w;
+                    tasks.add(() -> { for (int i = first; i < batch.length; i += threads) outcome[i] = solveTile(batch[i], lookahead); return null; });
+                }
+                for (Future<Void> f : WORKERS.invokeAll(tasks)) f.get();
+                for (int i = 0; i < batch.length; i++) {
+                    if (outcome[i] == CONTRADICTION) report.contradiction = true;
+                    else if (outcome[i] == BORDER) wakeAround(batch[i]);
+                }
+            }
+            check(report);
+            report.nanos = System.nanoTime() - start;
+            return report;
+        }
+
+        private int[] takeAwake() {
+            int tiles = tileRows * tileCols, n = 0;
+            int[] batch = new int[tiles];
+            for (int t = 0; t < tiles; t++) if ((awake[t >>> 6] & 1L << t) != 0) batch[n++] = t;
+            Arrays.fill(awake, 0L);
+            return Arrays.copyOf(batch, n);
+        }
+
+        private void wakeAround(int t) {
+            int tr = t / tileCols, tc = t % tileCols;
+            for (int r = Math.max(0, tr - 1); r <= Math.min(tileRows - 1, tr + 1); r++)
+                for (int c = Math.max(0, tc - 1); c <= Math.min(tileCols - 1, tc + 1); c++) { int k = r * tileCols + c; awake[k >>> 6] |= 1L << k; }
+        }
+
+        // --- ONE TILE: LOAD, PROPAGATE, WRITE BACK WHAT CHANGED ---
+        private byte solveTile(int t, boolean lookahead) {
+            int r0 = t / tileCols * tile, c0 = t % tileCols * tile, h = Math.min(tile, rows - r0), w = Math.min(tile, cols - c0);
+            PackedBoard pb = boards.get().computeIfAbsent(h << 16 | w, k -> PackedBoard.grid(h, w));
+            pb.reset();
+            for (int r = 0; r < h; r++) for (int c = 0; c < w; c++) pb.clue[pb.cell(r, c)] = (byte) clue(r0 + r, c0 + c);
+            for (int e = 0; e < pb.edgeCount; e++) { int s = states.get(global(pb, r0, c0, e)); if (s != 0) pb.set(e, s); }
+            for (int r = 0; r <= h; r++) for (int c = 0; c <= w; c++) {
+                if (r > 0 && r < h && c > 0 && c < w) continue;
+                int lines = 0, unknown = 0;
+                for (int i = 0; i < 4; i++) {
+                    long e = i == 0 ? (r == 0 && r0 > 0 ? vEdge(r0 - 1, c0 + c) : -1) : i == 1 ? (r == h && r0 + h < rows ? vEdge(r0 + h, c0 + c) : -1)
+                           : i == 2 ? (c == 0 && c0 > 0 ? hEdge(r0 + r, c0 - 1) : -1) : (c == w && c0 + w < cols ? hEdge(r0 + r, c0 + w) : -1);
+                    if (e < 0) continue;
+                    int s = states.get(e);
+                    if (s == 1) lines++; else if (s == 0) unknown++;
+                }
+                pb.setOpen(pb.node(r, c), lines, unknown);
+            }
+
+            if (!pb.propagateAll() || pb.hasPrematureLoop()) return CONTRADICTION;
+            for (boolean progress = lookahead; progress; ) {
+                progress = false;
+                for (int e = 0; e < pb.edgeCount; e++) {
+                    if (pb.state[e] != 0) continue;
+                    int forced = !pb.testHypothesis(e, 1) ? 2 : !pb.testHypothesis(e, 2) ? 1 : 0;
+                    if (forced == 0) continue;
+                    int mark = pb.mark();
+                    pb.set(e, forced);
+                    if (!pb.propagate(mark)) return CONTRADICTION;
+                    progress = true;
+                }
+            }
+
+            byte outcome = QUIET;
+            for (int e = 0; e < pb.edgeCount; e++) {
+                long g = global(pb, r0, c0, e);
+                if (pb.state[e] == states.get(g)) continue;
+                states.put(g, pb.state[e]);
+                if (onBorder(pb, pb.edgeN1[e]) || onBorder(pb, pb.edgeN2[e])) outcome = BORDER;
+            }
+            return outcome;
+        }
+
+        private long global(PackedBoard pb, int r0, int c0, int e) {
+            int w = pb.cols, horizontal = (pb.rows + 1) * w;
+            if (e < horizontal) return hEdge(r0 + e / w, c0 + e % w);
+            e -= horizontal;
+            return vEdge(r0 + e / (w + 1), c0 + e % (w + 1));
+        }
+
+        private static boolean onBorder(PackedBoard pb, int n) {
+            int r = n / (pb.cols + 1), c = n % (pb.cols + 1);
+            return r == 0 || r == pb.rows || c == 0 || c == pb.cols;
+        }
+
+        // --- GLOBAL PASS: DEGREES, CLUES AND LOOP COUNT OVER THE MAPPED STATES ---
+        private void check(Report report) throws IOException {
+            Path file = dir.resolve("parents.bin");
+            try (MappedBytes parent = new MappedBytes(file, nodeCount * 4)) {
+                for (long n = 0; n < nodeCount; n++) parent.putInt(n * 4, (int) n);
+                for (int r = 0; r <= rows; r++) for (int c = 0; c <= cols; c++) {
+                    long n = (long) r * (cols + 1) + c;
+                    int deg = 0;
+                    if (c < cols) { int s = state(hEdge(r, c)); if (s == 1) { deg++; report.lines++; union(parent, n, n + 1); } else if (s == 0) report.unknown++; }
+                    if (r < rows) { int s = state(vEdge(r, c)); if (s == 1) { deg++; report.lines++; union(parent, n, n + cols + 1); } else if (s == 0) report.unknown++; }
+                    if (c > 0 && state(hEdge(r, c - 1)) == 1) deg++;
+                    if (r > 0 && state(vEdge(r - 1, c)) == 1) deg++;
+                    if (deg != 0 && deg != 2) report.badNodes++;
+                    if (r < rows && c < cols) {
+                        int q = clue(r, c);
+                        if (q >= 0 && q != state(hEdge(r, c)) % 2 + state(hEdge(r + 1, c)) % 2 + state(vEdge(r, c)) % 2 + state(vEdge(r, c + 1)) % 2) report.badClues++;
+                    }
+                }
+                for (int r = 0; r <= rows; r++) for (int c = 0; c <= cols; c++) {
+                    long n = (long) r * (cols + 1) + c;
+                    boolean touched = (c < cols && state(hEdge(r, c)) == 1) || (r < rows && state(vEdge(r, c)) == 1)
+                            || (c > 0 && state(hEdge(r, c - 1)) == 1) || (r > 0 && state(vEdge(r - 1, c)) == 1);
+                    if (touched && find(parent, n) == n) report.components++;
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        private static long find(MappedBytes parent, long n) {
+            for (long p; (p = parent.getInt(n * 4)) != n; n = p) parent.putInt(n * 4, parent.getInt(p * 4));
+            return n;
         }
+
+        private static void union(MappedBytes parent, long a, long b) {
+            a = find(parent, a); b = find(parent, b);
+            if (a != b) parent.putInt(a * 4, (int) b);
+        }
+
+        public void close() throws IOException { clues.close(); states.close(); }
     }
 
     // ==========================================
     // 2. NESTED AI LOGIC 
     // ==========================================
 
+    enum Rule {
+        DIAGONAL_3_0("Diagonal 3 & 0"), ADJACENT_3S("Adjacent 3s"), DIAGONAL_3S("Diagonal 3s"), CORNER_3("Corner 3"),
+        CLUE_FORCED("Clue count"), NODE_FORCED("Node degree"), LOOKAHEAD("Lookahead"),
+        LOOP_CLOSURE("Loop closure"), EDGE_PAIRS("Edge pairs"); // new rules go last: the solution cache stores ordinals
+
+        final String label;
+        Rule(String label) { this.label = label; }
+    }
+
+    static class Deduction {
+        final Edge edge;
+        final int state;
+        final Rule rule;
+        Deduction(Edge edge, int state, Rule rule) { this.edge = edge; this.state = state; this.rule = rule; }
+    }
+
+    enum Verdict {
+        VALID, VICTORY, BAD_CLUE, BAD_NODE, PREMATURE_LOOP, // referee
+        DEDUCED, GUESSED, CONTRADICTION, STUCK;             // AI move
+
+        boolean isError() { return this == BAD_CLUE || this == BAD_NODE || this == PREMATURE_LOOP; }
+    }
+
+    // One referee verdict or AI move with the edges it touched. ComputerPartner reuses a single instance,
+    // so a listener copies whatever it keeps past the callback; message() builds text only when asked.
+    static final class MoveResult {
+        Verdict verdict = Verdict.VALID;
+        Rule rule;      // rule behind the last deduction, null for referee verdicts and guesses
+        int value;      // greedy weight for GUESSED, region count for a parallel-regions move
+        int edgeCount;
+        int[] edgeIds = new int[16];
+        byte[] states = new byte[16];
+
+        void reset(Verdict verdict) { this.verdict = verdict; rule = null; value = 0; edgeCount = 0; }
+
+        void add(Edge e, int state, Rule rule) {
+            if (edgeCount == edgeIds.length) { edgeIds = Arrays.copyOf(edgeIds, edgeCount * 2); states = Arrays.copyOf(states, edgeCount * 2); }
+            edgeIds[edgeCount] = e.id; states[edgeCount++] = (byte) state;
+            this.rule = rule;
+        }
+
+        boolean isError() { return verdict.isError(); }
+
+        MoveResult copy() {
+            MoveResult r = new MoveResult();
+            r.verdict = verdict; r.rule = rule; r.value = value; r.edgeCount = edgeCount;
+            r.edgeIds = Arrays.copyOf(edgeIds, Math.max(edgeCount, 1)); r.states = Arrays.copyOf(states, Math.max(edgeCount, 1));
+            return r;
+        }
+
+        String message() {
+            switch (verdict) {
+                case VALID: return "Valid";
+                case VICTORY: return "VICTORY";
+                case BAD_CLUE: return "Error: Move invalidates clues!";
+                case BAD_NODE: return "Error: Branch or Dead End!";
+                case PREMATURE_LOOP: return "Error: Secondary or Premature Loop!";
+                case STUCK: return "AI: I've made all logical deductions. Your turn!";
+                case CONTRADICTION: return "AI: The board contradicts itself. Undo your last moves!"; // raised by regions and edge pairs alike
+                case GUESSED: return states[0] == 2 ? "AI (Pure Greedy): Rejected Line. Placed CROSS." : "AI (Pure Greedy): Placed LINE on highest weight edge (Weight: " + value + ").";
+                default: break;
+            }
+            if (edgeCount == 0) return "AI: I've made all logical deductions. Your turn!";
+            if (value > 0) return "AI (Regions): Solved " + value + " independent regions in parallel (" + edgeCount + " edges).";
+            switch (rule) {
+                case DIAGONAL_3_0: return "AI: Grandmaster Move! Diagonal 3 & 0.";
+                case ADJACENT_3S: return "AI: Adjacent 3s pattern.";
+                case DIAGONAL_3S: return "AI: Diagonal 3s pattern.";
+                case CORNER_3: return "AI: Corner 3 forced outer lines.";
+                case CLUE_FORCED: return "AI: Clue forced the remaining edges.";
+                case NODE_FORCED: return "AI: Node degree forced the remaining edges.";
+                case LOOP_CLOSURE: return "AI (Loop Closure): Crossed an edge that would close a loop early.";
+                case EDGE_PAIRS: return "AI (Edge Pairs): Linked edges forced " + edgeCount + (edgeCount == 1 ? " edge." : " edges.");
+                default: return states[edgeCount - 1] == 2 ? "AI (Lookahead): Proved edge must be an 'X'." : "AI (Lookahead): Proved edge must be a Line.";
+            }
+        }
+    }
+
+    interface MoveListener {
+        void onResult(MoveResult result);
+    }
+
+    // Solver activity per edge id since the last clear(); the AI only fills it in while the overlay is on.
+    static class Heat {
+        final int[] tested, visits, contradictions;
+
+        Heat(int edgeCount) { tested = new int[edgeCount]; visits = new int[edgeCount]; contradictions = new int[edgeCount]; }
+
+        void clear() { Arrays.fill(tested, 0); Arrays.fill(visits, 0); Arrays.fill(contradictions, 0); }
+
+        int score(int e) { return visits[e] + 4 * tested[e] + 16 * contradictions[e]; }
+    }
+
     static class ComputerPartner {
+        public boolean useBitboard = false;
+        public boolean useParallelRegions = false;
+        private Bitboard bitboard;
+        private List<Deduction> trace;
+        private PackedBoard packed;
+        private Edge packedView;
+        private int[] contradictions, recentStamp, testedStamp;
+        private long[] candidates;
+        private int clock, splitCalls;
+        public long deadline; // System.nanoTime() after which lookahead gives up; 0 = no deadline
+        public BooleanSupplier cancelled; // polled alongside the deadline; null = never cancelled
+        public Heat heat; // null unless the heat-map overlay is on
+        public MoveListener listener; // told about every check() and move()
+        private final MoveResult result = new MoveResult();
         
         // --- PILLAR 1: DIVIDE & CONQUER (MERGE SORT ON EDGES) ---
         private void customMergeSortEdges(List<Edge> list, int left, int right) {
@@ -120,12 +1833,12 @@ public class CoopLoopy3 extends JPanel {
         }
 
         // --- NEW PILLAR 2: PURE TEXTBOOK GREEDY ---
-        private String applyTextbookGreedy(List<Edge> edges, List<Node> nodes, List<Cell> cells) {
+        private boolean applyTextbookGreedy(List<Edge> edges, List<Node> nodes, List<Cell> cells) {
             List<Edge> emptyEdges = new ArrayList<>();
             for (Edge e : edges) {
                 if (e.state == 0) emptyEdges.add(e);
             }
-            if (emptyEdges.isEmpty()) return null;
+            if (emptyEdges.isEmpty()) return false;
 
             // Sort edges greedily by objective function weight
             customMergeSortEdges(emptyEdges, 0, emptyEdges.size() - 1);
@@ -143,116 +1856,413 @@ public class CoopLoopy3 extends JPanel {
             }
 
             // Irrevocable Choice
-            if (!isFeasible) {
-                bestEdge.setState(2); // Must cross
-                return "AI (Pure Greedy): Rejected Line. Placed CROSS.";
-            } else {
-                return "AI (Pure Greedy): Placed LINE on highest weight edge (Weight: " + getGreedyWeight(bestEdge) + ").";
-            }
+            if (!isFeasible) bestEdge.setState(2); // Must cross
+            else result.value = getGreedyWeight(bestEdge);
+            result.verdict = Verdict.GUESSED;
+            result.add(bestEdge, bestEdge.state, null);
+            return true;
         }
 
         // --- AI EXECUTION ENGINE ---
-        public String makeMove(List<Cell> cells, List<Node> nodes, List<Edge> edges) {
-            String patternMove = applyGreedyPatterns(cells);
-            if (patternMove != null) return patternMove;
+        // The returned result is reused by the next check() or move().
+        public MoveResult move(List<Cell> cells, List<Node> nodes, List<Edge> edges) {
+            result.reset(Verdict.DEDUCED);
+            if (useBitboard ? applyBitboardPatterns(cells, edges) : applyGreedyPatterns(cells)) return publish();
+            if (applyLoopClosure(cells, nodes)) return publish();
+            if (applyEdgePairs(cells, edges)) return publish();
+            if (useParallelRegions && applyParallelRegions(cells, nodes, edges)) return publish();
 
             // Triggering the true textbook greedy algorithm
-            String greedyMove = applyTextbookGreedy(edges, nodes, cells);
-            if (greedyMove != null) return greedyMove;
+            if (applyTextbookGreedy(edges, nodes, cells)) return publish();
+            if (applyDomainSplitting(cells, nodes, edges)) return publish();
+
+            result.verdict = Verdict.STUCK;
+            return publish();
+        }
+
+        public String makeMove(List<Cell> cells, List<Node> nodes, List<Edge> edges) { return move(cells, nodes, edges).message(); }
 
-            String dsMove = applyDomainSplitting(cells, nodes, edges);
-            if (dsMove != null) return dsMove;
+        private MoveResult publish() {
+            if (listener != null) listener.onResult(result);
+            return result;
+        }
 
-            return "AI: I've made all logical deductions. Your turn!";
+        private void deduce(Edge e, int state, Rule rule) {
+            e.setState(state);
+            result.add(e, state, rule);
+            if (recentStamp != null && e.id < recentStamp.length) touchNeighbours(e);
+            if (trace != null) trace.add(new Deduction(e, state, rule));
         }
 
-        private boolean setEdges(Edge... edgesToSet) {
+        private boolean setEdges(Rule rule, Edge... edgesToSet) {
             boolean changed = false;
             for (Edge e : edgesToSet) {
-                if (e != null && e.state == 0) { e.setState(1); changed = true; }
+                if (e != null && e.state == 0) { deduce(e, 1, rule); changed = true; }
             }
             return changed;
         }
 
-        private String applyGreedyPatterns(List<Cell> cells) {
+        private boolean applyGreedyPatterns(List<Cell> cells) {
+            int lastRow = 0, lastCol = 0; // corners come from the board's own size, not the GUI's 5x5
+            for (Cell c : cells) { lastRow = Math.max(lastRow, c.r); lastCol = Math.max(lastCol, c.c); }
             for (Cell c : cells) {
                 if (c.clue == 3) {
                     for (Cell neighbor : cells) {
                         if (neighbor.clue == 0) {
-                            if (neighbor.r == c.r - 1 && neighbor.c == c.c - 1 && setEdges(c.getTop(), c.getLeft())) return "AI: Grandmaster Move! Diagonal 3 & 0.";
-                            if (neighbor.r == c.r - 1 && neighbor.c == c.c + 1 && setEdges(c.getTop(), c.getRight())) return "AI: Grandmaster Move! Diagonal 3 & 0.";
-                            if (neighbor.r == c.r + 1 && neighbor.c == c.c - 1 && setEdges(c.getBottom(), c.getLeft())) return "AI: Grandmaster Move! Diagonal 3 & 0.";
-                            if (neighbor.r == c.r + 1 && neighbor.c == c.c + 1 && setEdges(c.getBottom(), c.getRight())) return "AI: Grandmaster Move! Diagonal 3 & 0.";
+                            if (neighbor.r == c.r - 1 && neighbor.c == c.c - 1 && setEdges(Rule.DIAGONAL_3_0, c.getTop(), c.getLeft())) return true;
+                            if (neighbor.r == c.r - 1 && neighbor.c == c.c + 1 && setEdges(Rule.DIAGONAL_3_0, c.getTop(), c.getRight())) return true;
+                            if (neighbor.r == c.r + 1 && neighbor.c == c.c - 1 && setEdges(Rule.DIAGONAL_3_0, c.getBottom(), c.getLeft())) return true;
+                            if (neighbor.r == c.r + 1 && neighbor.c == c.c + 1 && setEdges(Rule.DIAGONAL_3_0, c.getBottom(), c.getRight())) return true;
                         }
                         if (neighbor.clue == 3) {
-                            if (neighbor.r == c.r && neighbor.c == c.c + 1 && setEdges(c.getLeft(), c.getRight(), neighbor.getRight())) return "AI: Adjacent 3s pattern.";
-                            if (neighbor.c == c.c && neighbor.r == c.r + 1 && setEdges(c.getTop(), c.getBottom(), neighbor.getBottom())) return "AI: Adjacent 3s pattern.";
-                            if (neighbor.r == c.r + 1 && neighbor.c == c.c + 1 && setEdges(c.getTop(), c.getLeft(), neighbor.getBottom(), neighbor.getRight())) return "AI: Diagonal 3s pattern.";
-                            if (neighbor.r == c.r + 1 && neighbor.c == c.c - 1 && setEdges(c.getTop(), c.getRight(), neighbor.getBottom(), neighbor.getLeft())) return "AI: Diagonal 3s pattern.";
+                            if (neighbor.r == c.r && neighbor.c == c.c + 1 && setEdges(Rule.ADJACENT_3S, c.getLeft(), c.getRight(), neighbor.getRight())) return true;
+                            if (neighbor.c == c.c && neighbor.r == c.r + 1 && setEdges(Rule.ADJACENT_3S, c.getTop(), c.getBottom(), neighbor.getBottom())) return true;
+                            if (neighbor.r == c.r + 1 && neighbor.c == c.c + 1 && setEdges(Rule.DIAGONAL_3S, c.getTop(), c.getLeft(), neighbor.getBottom(), neighbor.getRight())) return true;
+                            if (neighbor.r == c.r + 1 && neighbor.c == c.c - 1 && setEdges(Rule.DIAGONAL_3S, c.getTop(), c.getRight(), neighbor.getBottom(), neighbor.getLeft())) return true;
                         }
                     }
-                    if (c.r == 0 && c.c == 0 && setEdges(c.getTop(), c.getLeft())) return "AI: Corner 3 forced outer lines.";
-                    if (c.r == 0 && c.c == 4 && setEdges(c.getTop(), c.getRight())) return "AI: Corner 3 forced outer lines.";
-                    if (c.r == 4 && c.c == 0 && setEdges(c.getBottom(), c.getLeft())) return "AI: Corner 3 forced outer lines.";
-                    if (c.r == 4 && c.c == 4 && setEdges(c.getBottom(), c.getRight())) return "AI: Corner 3 forced outer lines.";
+                    if (c.r == 0 && c.c == 0 && setEdges(Rule.CORNER_3, c.getTop(), c.getLeft())) return true;
+                    if (c.r == 0 && c.c == lastCol && setEdges(Rule.CORNER_3, c.getTop(), c.getRight())) return true;
+                    if (c.r == lastRow && c.c == 0 && setEdges(Rule.CORNER_3, c.getBottom(), c.getLeft())) return true;
+                    if (c.r == lastRow && c.c == lastCol && setEdges(Rule.CORNER_3, c.getBottom(), c.getRight())) return true;
                 }
             }
-            return null;
+            return false;
         }
 
-        private String applyDomainSplitting(List<Cell> cells, List<Node> nodes, List<Edge> edges) {
-            for (Edge e : edges) {
-                if (e.state == 0) {
-                    if (!testHypothesis(e, 1, cells, nodes, edges)) {
-                        e.setState(2); 
-                        return "AI (Lookahead): Proved edge must be an 'X'.";
+        // --- REGION DECOMPOSITION: INDEPENDENT SUB-BOARDS SOLVED IN PARALLEL ---
+        // Unknown edges are linked through shared nodes and through any shared cell (clued or not),
+        // so no node or cell constraint spans two regions and each region can be solved on its own copy.
+        private List<int[]> findRegions(PackedBoard pb) {
+            List<int[]> regions = new ArrayList<>();
+            boolean[] seen = new boolean[pb.edgeCount];
+            int[] stack = new int[pb.edgeCount], members = new int[pb.edgeCount]; // scratch shared by every region
+            for (int start = 0; start < pb.edgeCount; start++) {
+                if (pb.state[start] != 0 || seen[start]) continue;
+                int size = 0, top = 0;
+                stack[top++] = start; seen[start] = true;
+                while (top > 0) {
+                    int e = stack[--top];
+                    members[size++] = e;
+                    for (int end = 0; end < 2; end++) {
+                        int n = end == 0 ? pb.edgeN1[e] : pb.edgeN2[e];
+                        for (int i = pb.nodeEdgeStart[n]; i < pb.nodeEdgeStart[n + 1]; i++) {
+                            int ne = pb.nodeEdges[i];
+                            if (pb.state[ne] == 0 && !seen[ne]) { seen[ne] = true; stack[top++] = ne; }
+                        }
                     }
-                    if (!testHypothesis(e, 2, cells, nodes, edges)) {
-                        e.setState(1); 
-                        return "AI (Lookahead): Proved edge must be a Line.";
+                    for (int j = pb.edgeCellStart[e]; j < pb.edgeCellStart[e + 1]; j++) {
+                        int k = pb.edgeCells[j];
+                        for (int i = pb.cellEdgeStart[k]; i < pb.cellEdgeStart[k + 1]; i++) {
+                            int ce = pb.cellEdges[i];
+                            if (pb.state[ce] == 0 && !seen[ce]) { seen[ce] = true; stack[top++] = ce; }
+                        }
                     }
                 }
+                regions.add(Arrays.copyOf(members, size));
+            }
+            return regions;
+        }
+
+        // One-level lookahead over this region's edges on a worker's copy of the propagated board. Returns the
+        // region's settled edges as (edge << 2 | state), or null on a contradiction; the copy is rewound either way.
+        private int[] solveRegion(PackedBoard pb, int[] region) {
+            int base = pb.mark();
+            boolean progress = true;
+            while (progress) {
+                progress = false;
+                for (int e : region) {
+                    if (pb.state[e] != 0) continue;
+                    int mark = pb.mark(), forced = 0;
+                    if (refutes(pb, e, 1)) forced = 2;
+                    else if (refutes(pb, e, 2)) forced = 1;
+                    if (forced == 0) continue;
+                    pb.set(e, forced);
+                    if (!pb.propagate(mark)) { pb.undo(base); return null; }
+                    progress = true;
+                }
             }
-            return null;
+            int n = 0;
+            int[] settled = new int[region.length];
+            for (int e : region) if (pb.state[e] != 0) settled[n++] = e << 2 | pb.state[e];
+            pb.undo(base);
+            return Arrays.copyOf(settled, n);
         }
 
-        private boolean testHypothesis(Edge testEdge, int testState, List<Cell> cells, List<Node> nodes, List<Edge> edges) {
-            int[] backup = new int[edges.size()];
-            for(int i = 0; i < edges.size(); i++) backup[i] = edges.get(i).state;
+        // Propagation runs once on the shared view before the split. Each worker then owns one copy and takes
+        // every workers-th region, rewinding between regions, so work and memory grow with the worker count
+        // rather than with the number of regions.
+        private boolean applyParallelRegions(List<Cell> cells, List<Node> nodes, List<Edge> edges) {
+            PackedBoard pb = packed(cells, edges);
+            if (!pb.propagateAll()) { result.verdict = Verdict.CONTRADICTION; return true; }
+            List<int[]> regions = findRegions(pb);
+            if (regions.size() < 2) return false;
+
+            int workers = Math.min(regions.size(), Runtime.getRuntime().availableProcessors());
+            int[][] settled = new int[regions.size()][];
+            List<PackedBoard> copies = new ArrayList<>();
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                PackedBoard copy = pb.copy();
+                copy.visits = pb.visits == null ? null : new int[pb.edgeCount]; // propagation crosses regions, so each worker counts alone
+                copies.add(copy);
+                int first = w;
+                tasks.add(() -> { for (int i = first; i < settled.length; i += workers) settled[i] = solveRegion(copy, regions.get(i)); return null; });
+            }
+            try {
+                for (Future<Void> f : WORKERS.invokeAll(tasks)) f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+            if (pb.visits != null) for (PackedBoard copy : copies) for (int e = 0; e < pb.edgeCount; e++) pb.visits[e] += copy.visits[e];
+
+            // A contradiction in any region leaves the board untouched. What propagation alone settled is left to
+            // the tiers that own it; only the regions' lookahead results are written, and labelled as such.
+            for (int[] found : settled) if (found == null) { result.verdict = Verdict.CONTRADICTION; return true; }
+            int deduced = 0;
+            for (int[] found : settled) {
+                for (int t : found) deduce(edges.get(t >>> 2), t & 3, Rule.LOOKAHEAD);
+                deduced += found.length;
+            }
+
+            if (hasPrematureLoop(edges, nodes, cells)) { result.verdict = Verdict.CONTRADICTION; return true; }
+            if (deduced == 0) return false;
+            result.value = regions.size();
+            return true;
+        }
 
-            testEdge.setState(testState); 
-            boolean isValid = true;
-            boolean changed = true;
-            
-            while (changed && isValid) {
-                changed = false;
-                for(Cell c : cells) {
-                    if(c.clue == -1) continue;
-                    int f = c.filledCount; int u = c.unknownCount;
-                    if (f > c.clue || f + u < c.clue) { isValid = false; break; }
-                    if (u > 0) {
-                        if (f == c.clue) { for(Edge ce : c.edges) if(ce.state == 0) { ce.setState(2); changed = true; } } 
-                        else if (f + u == c.clue) { for(Edge ce : c.edges) if(ce.state == 0) { ce.setState(1); changed = true; } }
+        // --- BITBOARD PATTERNS: MASK/VALUE WINDOWS + PRECOMPUTED CELL/NODE TABLES ---
+        private boolean applyBitboardPatterns(List<Cell> cells, List<Edge> edges) {
+            if (edges.isEmpty()) return false;
+            if (bitboard == null || edges.get(0).bits != bitboard) bitboard = Bitboard.attach(cells, edges);
+            Bitboard b = bitboard;
+            for (int r = 0; r < b.rows; r++) {
+                for (int c = 0; c < b.cols; c++) {
+                    long w = b.window(r, c);
+                    for (int p = 0; p < Bitboard.PATTERNS.size(); p++) {
+                        long[] pat = Bitboard.PATTERNS.get(p);
+                        if ((w & pat[0]) == pat[1] && applySlots(b, edges, r, c, (int) pat[2], 0, Bitboard.PATTERN_IDS.get(p))) return true;
+                    }
+                    int forced = Bitboard.CELL_TABLE[Bitboard.cellKey(w)];
+                    if (forced != 0 && applySlots(b, edges, r, c, forced & 0xF, (forced >>> 4) & 0xF, Rule.CLUE_FORCED)) return true;
+                    for (int corner = 0; corner < 4; corner++) {
+                        forced = Bitboard.NODE_TABLE[Bitboard.nodeKey(w, corner)];
+                        if (forced != 0 && applySlots(b, edges, r, c, Bitboard.cornerSlots(corner, forced & 0xF), Bitboard.cornerSlots(corner, (forced >>> 4) & 0xF), Rule.NODE_FORCED)) {
+                            return true;
+                        }
                     }
                 }
-                if(!isValid) break;
+            }
+            return false;
+        }
 
-                for(Node n : nodes) {
-                    int f = n.filledCount; int u = n.unknownCount;
-                    if (f > 2 || (f == 1 && u == 0)) { isValid = false; break; }
-                    if (u > 0) {
-                        if (f == 2) { for(Edge ne : n.connectedEdges) if(ne.state == 0) { ne.setState(2); changed = true; } } 
-                        else if (f == 1 && u == 1) { for(Edge ne : n.connectedEdges) if(ne.state == 0) { ne.setState(1); changed = true; } } 
-                        else if (f == 0 && u == 1) { for(Edge ne : n.connectedEdges) if(ne.state == 0) { ne.setState(2); changed = true; } }
-                    }
+        private boolean applySlots(Bitboard b, List<Edge> edges, int r, int c, int lineSlots, int crossSlots, Rule rule) {
+            boolean changed = false;
+            for (int s = 0; s < 12; s++) {
+                int want = (lineSlots & (1 << s)) != 0 ? 1 : (crossSlots & (1 << s)) != 0 ? 2 : 0;
+                if (want == 0) continue;
+                int id = b.edgeAt(r, c, s);
+                if (id >= 0 && edges.get(id).state == 0) { deduce(edges.get(id), want, rule); changed = true; }
+            }
+            return changed;
+        }
+
+        // --- PROPAGATE-TO-FIXPOINT: EVERY SOUND TIER IN ONE CALL, RECORDED AS A DEDUCTION LIST ---
+        // The textbook greedy tier guesses rather than deduces, so it is left out. A tier that finds the board
+        // contradictory changes nothing, so the loop stops there and the contradiction is published once.
+        public List<Deduction> solveToFixpoint(List<Cell> cells, List<Node> nodes, List<Edge> edges) {
+            List<Deduction> deductions = new ArrayList<>();
+            trace = deductions;
+            result.reset(Verdict.DEDUCED);
+            try {
+                while (!expired()) {
+                    if (useBitboard ? applyBitboardPatterns(cells, edges) : applyGreedyPatterns(cells)) continue;
+                    if (applyForcedEdges(cells, nodes)) continue;
+                    if (applyLoopClosure(cells, nodes)) continue;
+                    if (applyEdgePairs(cells, edges)) { if (contradicted()) break; continue; }
+                    if (applyDomainSplitting(cells, nodes, edges)) continue;
+                    break;
+                }
+            } finally {
+                trace = null;
+            }
+            if (contradicted()) publish();
+            return deductions;
+        }
+
+        // True when the last move() or solveToFixpoint() stopped on a contradiction, until the next check() or move().
+        public boolean contradicted() { return result.verdict == Verdict.CONTRADICTION; }
+
+        // --- LOOP CLOSURE: NEVER JOIN THE TWO ENDS OF ONE SEGMENT EARLY ---
+        // The edge between a segment's ends would close it into a loop, which is only allowed when that
+        // segment is the last one and the extra line leaves every clue satisfied.
+        private boolean applyLoopClosure(List<Cell> cells, List<Node> nodes) {
+            int ends = 0;
+            for (Node n : nodes) if (n.filledCount == 1) ends++;
+            for (Node n : nodes) {
+                if (n.filledCount != 1 || n.partner == null || n.partner.partner != n || n.id > n.partner.id) continue;
+                for (Edge e : n.connectedEdges) {
+                    if (e.state != 0 || (e.n1 != n.partner && e.n2 != n.partner)) continue;
+                    if (ends == 2 && completesClues(cells, e)) continue;
+                    deduce(e, 2, Rule.LOOP_CLOSURE);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // --- EDGE PAIRS: PROPAGATION THAT KNOWS "EXACTLY ONE OF" AND "BOTH OR NEITHER" ---
+        // Plain forcing and loop closure run to their fixpoint first. The first edge set after that came from a
+        // pair relation; it is this tier's one deduction per call, and whatever it forces in turn is left to the
+        // simpler tiers, which label it themselves.
+        private boolean applyEdgePairs(List<Cell> cells, List<Edge> edges) {
+            PackedBoard pb = packed(cells, edges);
+            if (!pb.propagatePlain()) { result.verdict = Verdict.CONTRADICTION; return true; }
+            int plain = pb.mark();
+            if (!pb.propagateAll()) { result.verdict = Verdict.CONTRADICTION; return true; }
+            int e = pb.firstSetSince(plain);
+            if (e < 0) return false;
+            deduce(edges.get(e), pb.state[e], Rule.EDGE_PAIRS);
+            return true;
+        }
+
+        private boolean completesClues(List<Cell> cells, Edge closing) {
+            for (Cell c : cells) if (c.clue != -1 && c.filledCount + (closing.connectedCells.contains(c) ? 1 : 0) != c.clue) return false;
+            return true;
+        }
+
+        private boolean applyForcedEdges(List<Cell> cells, List<Node> nodes) {
+            boolean changed = false;
+            for (Cell c : cells) {
+                if (c.clue == -1 || c.unknownCount == 0) continue;
+                int want = c.filledCount == c.clue ? 2 : c.filledCount + c.unknownCount == c.clue ? 1 : 0;
+                if (want != 0) for (Edge e : c.edges) if (e.state == 0) { deduce(e, want, Rule.CLUE_FORCED); changed = true; }
+            }
+            for (Node n : nodes) {
+                if (n.unknownCount == 0) continue;
+                int f = n.filledCount, u = n.unknownCount;
+                int want = f == 2 || (f == 0 && u == 1) ? 2 : (f == 1 && u == 1) ? 1 : 0;
+                if (want != 0) for (Edge e : n.connectedEdges) if (e.state == 0) { deduce(e, want, Rule.NODE_FORCED); changed = true; }
+            }
+            return changed;
+        }
+
+        public boolean expired() { return (deadline != 0 && System.nanoTime() - deadline > 0) || (cancelled != null && cancelled.getAsBoolean()); }
+
+        // Drops every cached view so the next call rebuilds them, e.g. after a pooled board is given new clues.
+        public void forget() { packed = null; packedView = null; bitboard = null; contradictions = null; }
+
+        // A copy of the candidate-ranking history (contradiction counts, recency and test stamps, clock and
+        // split count) kept for the puzzle these edges belong to, or null if none is. Safe to hand to another thread.
+        int[][] ranking(List<Edge> edges) {
+            if (contradictions == null || edges.isEmpty() || packedView != edges.get(0)) return null;
+            return new int[][]{contradictions.clone(), recentStamp.clone(), testedStamp.clone(), {clock, splitCalls}};
+        }
+
+        // Continues from another partner's ranking() on this partner's own board of the same puzzle, so both
+        // test hypotheses in the same order; null starts the history afresh.
+        void adoptRanking(List<Cell> cells, List<Edge> edges, int[][] ranking) {
+            packed(cells, edges); // builds the view first: building it later would drop the adopted history
+            if (ranking == null || ranking[0].length != packed.edgeCount) { contradictions = null; return; }
+            contradictions = ranking[0].clone(); recentStamp = ranking[1].clone(); testedStamp = ranking[2].clone();
+            clock = ranking[3][0]; splitCalls = ranking[3][1];
+            if (candidates == null || candidates.length != contradictions.length) candidates = new long[contradictions.length];
+        }
+
+        // --- SOLUTION COUNTING: HOW MANY LOOPS COMPLETE THE CURRENT BOARD (UP TO 'limit') ---
+        public int countSolutions(List<Cell> cells, List<Edge> edges, int limit) {
+            return new SolutionCounter(packed(cells, edges).copy(), limit).count();
+        }
+
+        // The solver view is rebuilt only when a new puzzle's edges arrive; otherwise states are re-synced.
+        private PackedBoard packed(List<Cell> cells, List<Edge> edges) {
+            if (packed == null || packedView != edges.get(0)) { packed = PackedBoard.fromGraph(cells, edges); packed.enablePairs(); packedView = edges.get(0); contradictions = null; }
+            else {
+                if (recentStamp != null) for (Edge e : edges) if (packed.state[e.id] != e.state) touchNeighbours(e);
+                packed.load(edges);
+            }
+            packed.visits = heat != null && heat.visits.length == packed.edgeCount ? heat.visits : null;
+            return packed;
+        }
+
+        private boolean applyDomainSplitting(List<Cell> cells, List<Node> nodes, List<Edge> edges) {
+            PackedBoard pb = packed(cells, edges);
+            if (contradictions == null || contradictions.length != pb.edgeCount) {
+                contradictions = new int[pb.edgeCount]; recentStamp = new int[pb.edgeCount]; testedStamp = new int[pb.edgeCount];
+                candidates = new long[pb.edgeCount]; clock = 1;
+            }
+            if (++splitCalls % 32 == 0) for (int e = 0; e < pb.edgeCount; e++) contradictions[e] >>= 1;
+            int mark = pb.mark();
+            if (!pb.propagateAll()) pb.undo(mark); // rebuilds the pair relations the hypotheses propagate through
+
+            return splitOn(pb, edges, rankCandidates(pb, true)) || splitOn(pb, edges, rankCandidates(pb, false));
+        }
+
+        private boolean splitOn(PackedBoard pb, List<Edge> edges, int n) {
+            for (int i = n - 1; i >= 0 && !expired(); i--) {
+                int e = (int) candidates[i];
+                if (refutes(pb, e, 1)) {
+                    contradictions[e] += 8;
+                    deduce(edges.get(e), 2, Rule.LOOKAHEAD); 
+                    return true;
                 }
-                if(!isValid) break;
-                
-                if (hasPrematureLoop(edges, nodes, cells)) { isValid = false; break; }
+                if (refutes(pb, e, 2)) {
+                    contradictions[e] += 8;
+                    deduce(edges.get(e), 1, Rule.LOOKAHEAD); 
+                    return true;
+                }
+                testedStamp[e] = clock;
+            }
+            return false;
+        }
+
+        private boolean refutes(PackedBoard pb, int e, int s) {
+            boolean valid = pb.testHypothesis(e, s);
+            if (heat != null) { heat.tested[e]++; if (!valid) heat.contradictions[e]++; }
+            return !valid;
+        }
+
+        // --- CANDIDATE ORDERING: MOST CONSTRAINED FIRST ---
+        // Unknown edges are scored by open path ends and nearly saturated clues around them, by how recently
+        // a deduction landed next to them, and by how often testing them has hit a contradiction before.
+        // Edges whose neighbourhood changed since their last test go first; an edge tested since the last
+        // change anywhere on the board would give the same answer again and is skipped.
+        private int rankCandidates(PackedBoard pb, boolean dirty) {
+            int n = 0;
+            for (int e = 0; e < pb.edgeCount; e++) {
+                if (pb.state[e] != 0 || testedStamp[e] == clock) continue;
+                boolean changed = testedStamp[e] == 0 || recentStamp[e] > testedStamp[e];
+                if (changed == dirty) candidates[n++] = (long) candidateScore(pb, e) << 32 | e;
+            }
+            Arrays.sort(candidates, 0, n);
+            return n;
+        }
+
+        private int candidateScore(PackedBoard pb, int e) {
+            int score = contradictions[e] + nodeScore(pb, pb.edgeN1[e]) + nodeScore(pb, pb.edgeN2[e]);
+            if (recentStamp[e] != 0) score += Math.max(0, 32 - (clock - recentStamp[e]));
+            for (int j = pb.edgeCellStart[e]; j < pb.edgeCellStart[e + 1]; j++) {
+                int k = pb.edgeCells[j];
+                if (pb.clue[k] < 0) continue;
+                int need = pb.clue[k] - pb.cellFilled[k], u = pb.cellUnknown[k];
+                score += 10 * (3 - Math.min(need, u - need));
             }
+            return score;
+        }
+
+        private int nodeScore(PackedBoard pb, int n) {
+            int f = pb.nodeFilled[n], u = pb.nodeUnknown[n];
+            if (f == 1) return 40 - 8 * u;
+            return f == 0 && u == 2 ? 12 : 0;
+        }
 
-            for(int i = 0; i < edges.size(); i++) if (edges.get(i).state != backup[i]) edges.get(i).setState(backup[i]);
-            return isValid;
+        private void touchNeighbours(Edge e) {
+            clock++;
+            for (Node n : new Node[]{e.n1, e.n2}) for (Edge ne : n.connectedEdges) recentStamp[ne.id] = clock;
+            for (Cell c : e.connectedCells) for (Edge ce : c.edges) recentStamp[ce.id] = clock;
         }
 
         private boolean hasPrematureLoop(List<Edge> edges, List<Node> nodes, List<Cell> cells) {
@@ -336,16 +2346,115 @@ public class CoopLoopy3 extends JPanel {
             return dncAreNodesFinished(nodes, left, mid) && dncAreNodesFinished(nodes, mid + 1, right);
         }
 
-        public String checkHumanMove(List<Cell> cells, List<Edge> edges, List<Node> nodes) {
-            if (!dncAreCellsValid(cells, 0, cells.size() - 1)) return "Error: Move invalidates clues!";
-            if (!dncAreNodesValid(nodes, 0, nodes.size() - 1)) return "Error: Branch or Dead End!";
-            if (hasPrematureLoop(edges, nodes, cells)) return "Error: Secondary or Premature Loop!";
+        // The returned result is reused by the next check() or move().
+        public MoveResult check(List<Cell> cells, List<Edge> edges, List<Node> nodes) {
+            result.reset(referee(cells, edges, nodes));
+            return publish();
+        }
+
+        public String checkHumanMove(List<Cell> cells, List<Edge> edges, List<Node> nodes) { return check(cells, edges, nodes).message(); }
+
+        private Verdict referee(List<Cell> cells, List<Edge> edges, List<Node> nodes) {
+            if (!dncAreCellsValid(cells, 0, cells.size() - 1)) return Verdict.BAD_CLUE;
+            if (!dncAreNodesValid(nodes, 0, nodes.size() - 1)) return Verdict.BAD_NODE;
+            if (hasPrematureLoop(edges, nodes, cells)) return Verdict.PREMATURE_LOOP;
             
             boolean gameFinished = dncAreNodesFinished(nodes, 0, nodes.size() - 1) && dncAreCellsFinished(cells, 0, cells.size() - 1);
             if (gameFinished) {
-                for (Edge e : edges) if (e.state == 1) return "VICTORY"; 
+                for (Edge e : edges) if (e.state == 1) return Verdict.VICTORY; 
             }
-            return "Valid";
+            return Verdict.VALID;
+        }
+    }
+
+    // --- SPECULATION: THE AI THINKS WHILE THE PLAYER DOES ---
+    // While the GUI waits for a click, a worker plays every click the player could make next on a private
+    // copy of the board, most likely first, and keeps the referee's verdict and the AI's reply to each.
+    // Every real change bumps the generation: the running analysis stops at its next expired() check and
+    // predictions from older generations are never served, so only the board on screen is ever answered.
+    // The private partner starts each click from the live partner's ranking history, so it tries hypotheses in
+    // the order the live one would. A served reply never runs on the live partner, though: the contradictions
+    // and test stamps that reply's search recorded are not carried back, and only the recency of the edges it
+    // changed reaches the live history (through its next re-sync).
+    static class Speculator {
+        static final class Prediction {
+            final long generation;
+            final MoveResult referee, reply; // reply is null when the referee rejects the click or it wins
+            Prediction(long generation, MoveResult referee, MoveResult reply) { this.generation = generation; this.referee = referee; this.reply = reply; }
+        }
+
+        private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "loopy-speculator"); t.setDaemon(true); t.setPriority(Thread.MIN_PRIORITY); return t;
+        });
+
+        private final AtomicLong generation = new AtomicLong();
+        private final Map<Integer, Prediction> predictions = new ConcurrentHashMap<>(); // edge id * 3 + clicked state
+        private final ComputerPartner partner = new ComputerPartner();
+        private Board board; // worker thread only
+        private int[][] boardClues;
+
+        Speculator(boolean useBitboard, boolean useParallelRegions) {
+            partner.useBitboard = useBitboard; partner.useParallelRegions = useParallelRegions;
+        }
+
+        // Called on the EDT once the board on screen has settled; lastEdge (or -1) is where the player was working
+        // and live is the partner whose replies the predictions stand in for.
+        void restart(int[][] clues, List<Edge> edges, int lastEdge, ComputerPartner live) {
+            long gen = generation.incrementAndGet();
+            predictions.clear();
+            int[] snapshot = new int[edges.size()];
+            for (Edge e : edges) snapshot[e.id] = e.state;
+            int[][] ranking = live.ranking(edges);
+            WORKER.execute(() -> analyze(gen, clues, snapshot, lastEdge, ranking));
+        }
+
+        // Called on the EDT as soon as the board is about to change.
+        void invalidate() { generation.incrementAndGet(); predictions.clear(); }
+
+        // The outcome of clicking edge e into 'state' on the board last passed to restart(), if already known.
+        Prediction lookup(int e, int state) {
+            Prediction p = predictions.get(e * 3 + state);
+            return p != null && p.generation == generation.get() ? p : null;
+        }
+
+        private void analyze(long gen, int[][] clues, int[] snapshot, int lastEdge, int[][] ranking) {
+            if (generation.get() != gen) return;
+            if (board == null || boardClues != clues) { board = new Board(clues); boardClues = clues; }
+            List<Edge> edges = board.edges;
+            for (Edge e : edges) if (e.state != snapshot[e.id]) e.setState(snapshot[e.id]);
+            partner.cancelled = () -> generation.get() != gen;
+
+            for (int id : likelyClicks(lastEdge)) {
+                if (generation.get() != gen) return;
+                Edge edge = edges.get(id);
+                int state = (edge.state + 1) % 3;
+                partner.adoptRanking(board.cells, edges, ranking); // each click answered as if it came first
+                edge.setState(state);
+                MoveResult referee = partner.check(board.cells, edges, board.nodes).copy(), reply = null;
+                if (!referee.isError() && referee.verdict != Verdict.VICTORY) reply = partner.move(board.cells, board.nodes, edges).copy();
+                if (generation.get() != gen) return; // the reply may have been cut short
+                predictions.put(id * 3 + state, new Prediction(gen, referee, reply));
+                for (Edge e : edges) if (e.state != snapshot[e.id]) e.setState(snapshot[e.id]);
+            }
+        }
+
+        // Open path ends first, then the neighbourhood of the last move, then unsatisfied clues; empty edges
+        // (a click draws a line) before decided ones.
+        private int[] likelyClicks(int lastEdge) {
+            List<Edge> edges = board.edges;
+            Edge last = lastEdge >= 0 && lastEdge < edges.size() ? edges.get(lastEdge) : null;
+            long[] keys = new long[edges.size()];
+            for (Edge e : edges) {
+                int score = e.state == 0 ? 1 : 0;
+                if (e.n1.filledCount == 1 || e.n2.filledCount == 1) score += 8;
+                if (last != null && (e.n1 == last.n1 || e.n1 == last.n2 || e.n2 == last.n1 || e.n2 == last.n2)) score += 4;
+                for (Cell c : e.connectedCells) if (c.clue != -1 && c.filledCount < c.clue) { score += 2; break; }
+                keys[e.id] = (long) (16 - score) << 32 | e.id;
+            }
+            Arrays.sort(keys);
+            int[] order = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) order[i] = (int) keys[i];
+            return order;
         }
     }
 
@@ -359,8 +2468,13 @@ public class CoopLoopy3 extends JPanel {
     private static final BasicStroke LINE_STROKE = new BasicStroke(4);
     private static final BasicStroke CROSS_STROKE = new BasicStroke(2);
     private static final BasicStroke EMPTY_STROKE = new BasicStroke(1);
+    private static final BasicStroke HEAT_STROKE = new BasicStroke(12, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
     private static final Color LINE_COLOR = new Color(0, 100, 255);
     private static final Color EMPTY_COLOR = new Color(220, 220, 220);
+    private static final long SOLVE_DEADLINE_MS = 1000;
+    private static final ExecutorService CACHE_WORKER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "loopy-cache"); t.setDaemon(true); t.setPriority(Thread.MIN_PRIORITY); return t;
+    });
 
     private List<Node> nodes = new ArrayList<>();
     private List<Edge> edges = new ArrayList<>();
@@ -369,13 +2483,23 @@ public class CoopLoopy3 extends JPanel {
     private Stack<int[]> history = new Stack<>();
     
     public boolean isProcessing = false;
+    private boolean showHeat = Boolean.getBoolean("loopy.heatmap");
+    private final boolean speculate = Boolean.parseBoolean(System.getProperty("loopy.speculate", "true"));
     private ComputerPartner ai;
+    private Speculator speculator;
+    private int[][] currentClues;
+    private SolutionCache.Entry known; // cached solution and deduction trace for the loaded puzzle, if any
+    private Timer solveTimer; // the Solve replay, kept so loading another puzzle can stop it mid-animation
     public JLabel statusLabel;
 
     public CoopLoopy3() {
         this.setPreferredSize(new Dimension(COLS * GAP + 100, ROWS * GAP + 150));
         this.setBackground(Color.WHITE);
         this.ai = new ComputerPartner();
+        this.ai.useBitboard = Boolean.getBoolean("loopy.bitboard");
+        this.ai.useParallelRegions = Boolean.getBoolean("loopy.regions");
+        this.ai.listener = this::showResult;
+        this.speculator = new Speculator(ai.useBitboard, ai.useParallelRegions);
 
         puzzles.add(new int[][]{
             {3, -1, -1,  3, -1}, {-1, 1, -1, -1,  2}, {-1,-1, -1, -1, -1}, {2, -1,  0, -1,  1}, {-1, 3, -1,  3, -1}
@@ -399,54 +2523,46 @@ public class CoopLoopy3 extends JPanel {
 
     public void loadPuzzle(int index) { initializeGame(index); }
 
+    public void loadRandomPuzzle() {
+        puzzles.add(new PuzzleGenerator(ROWS, COLS, System.nanoTime()).generate());
+        initializeGame(puzzles.size() - 1);
+    }
+
     private void initializeGame(int puzzleIndex) {
-        nodes.clear(); edges.clear(); cells.clear(); history.clear();
+        if (solveTimer != null) { solveTimer.stop(); solveTimer = null; }
+        history.clear();
         isProcessing = false;
         if (statusLabel != null) statusLabel.setText("Status: Puzzle " + (puzzleIndex + 1) + " Loaded.");
 
-        int nodeId = 0;
-        Node[][] nodeGrid = new Node[ROWS + 1][COLS + 1];
-        
-        for (int r = 0; r <= ROWS; r++) {
-            for (int c = 0; c <= COLS; c++) {
-                Node n = new Node(r, c, nodeId++);
-                nodeGrid[r][c] = n; nodes.add(n);
-            }
-        }
-        
-        for (int r = 0; r <= ROWS; r++) {
-            for (int c = 0; c < COLS; c++) {
-                Edge e = new Edge(nodeGrid[r][c], nodeGrid[r][c + 1], true);
-                edges.add(e); nodeGrid[r][c].connectedEdges.add(e); nodeGrid[r][c + 1].connectedEdges.add(e);
-            }
-        }
-        for (int r = 0; r < ROWS; r++) {
-            for (int c = 0; c <= COLS; c++) {
-                Edge e = new Edge(nodeGrid[r][c], nodeGrid[r + 1][c], false);
-                edges.add(e); nodeGrid[r][c].connectedEdges.add(e); nodeGrid[r + 1][c].connectedEdges.add(e);
-            }
-        }
-        
-        int[][] puzzleData = puzzles.get(puzzleIndex);
-        for (int r = 0; r < ROWS; r++) {
-            for (int c = 0; c < COLS; c++) {
-                Cell cell = new Cell(r, c, puzzleData[r][c]);
-                Node tl = nodeGrid[r][c]; Node tr = nodeGrid[r][c + 1];
-                Node bl = nodeGrid[r + 1][c]; Node br = nodeGrid[r + 1][c + 1];
-                for (Edge e : edges) {
-                    if ((e.n1==tl && e.n2==tr) || (e.n1==bl && e.n2==br) || (e.n1==tl && e.n2==bl) || (e.n1==tr && e.n2==br)) {
-                        cell.edges.add(e); e.connectedCells.add(cell);
-                    }
-                }
-                cells.add(cell);
-            }
-        }
+        currentClues = puzzles.get(puzzleIndex);
+        Board board = new Board(currentClues);
+        nodes = board.nodes; edges = board.edges; cells = board.cells;
+        known = null;
+        int[][] clues = currentClues;
+        CACHE_WORKER.execute(() -> { // a cache miss is solved here, never on the event thread
+            SolutionCache cache = SolutionCache.shared();
+            SolutionCache.Entry entry = cache != null ? cache.lookupOrSolve(clues) : null;
+            if (entry != null) SwingUtilities.invokeLater(() -> { if (currentClues == clues) known = entry; });
+        });
+        ai.heat = showHeat ? new Heat(edges.size()) : null;
 
-        for (Node n : nodes) n.initCache();
+        speculate(-1);
+        repaint();
+    }
 
+    public void setHeatMap(boolean on) {
+        showHeat = on;
+        ai.heat = on && !edges.isEmpty() ? new Heat(edges.size()) : null;
+        speculate(-1);
         repaint();
     }
 
+    // Hands the settled board to the background analyzer; the heat map needs the live AI, so it pauses then.
+    private void speculate(int lastEdge) {
+        if (speculate && ai.heat == null && !edges.isEmpty()) speculator.restart(currentClues, edges, lastEdge, ai);
+        else speculator.invalidate();
+    }
+
     private void saveState() {
         int[] snapshot = new int[edges.size()];
         for (int i = 0; i < edges.size(); i++) snapshot[i] = edges.get(i).state;
@@ -456,20 +2572,89 @@ public class CoopLoopy3 extends JPanel {
     public void undoLastMove() {
         if (history.isEmpty()) return;
         int[] snapshot = history.pop();
+        speculator.invalidate();
         for (int i = 0; i < edges.size(); i++) edges.get(i).setState(snapshot[i]);
         statusLabel.setText("Status: Move Undone.");
+        speculate(-1);
         repaint();
     }
 
+    // Deductions come from the puzzle cache while the board agrees with it, otherwise they are computed in
+    // one call; the board is rewound and the list is replayed as an animation.
+    public void solveByDeduction() {
+        if (isProcessing || edges.isEmpty()) return;
+        saveState();
+        speculator.invalidate();
+        int[] start = history.peek();
+        if (ai.heat != null) ai.heat.clear();
+        List<Deduction> cached = known != null && known.consistent(edges) ? known.remaining(edges) : Collections.emptyList();
+        long deadline = System.nanoTime() + SOLVE_DEADLINE_MS * 1_000_000L;
+        List<Deduction> steps = cached.isEmpty() ? solveBefore(deadline) : cached;
+        boolean timedOut = cached.isEmpty() && System.nanoTime() - deadline > 0;
+        boolean contradicted = cached.isEmpty() && ai.contradicted(); // the listener has already said so
+        if (steps.isEmpty()) { history.pop(); if (!contradicted) statusLabel.setText("AI: No further deductions."); speculate(-1); return; }
+        for (int i = 0; i < edges.size(); i++) edges.get(i).setState(start[i]);
+
+        isProcessing = true;
+        Iterator<Deduction> replay = steps.iterator();
+        Timer timer = new Timer(40, null);
+        timer.addActionListener(e -> {
+            if (!replay.hasNext()) {
+                timer.stop(); solveTimer = null; isProcessing = false;
+                if (isVictory()) statusLabel.setText("Status: AI FINISHED THE BOARD! YOU WIN!");
+                else {
+                    String ending = contradicted ? ", then hit a contradiction. Undo your last moves!" : timedOut ? " before the time limit. Your turn!" : ". Your turn!";
+                    statusLabel.setText("AI: Deduced " + steps.size() + " edges" + ending);
+                    speculate(-1);
+                }
+                return;
+            }
+            Deduction d = replay.next();
+            d.edge.setState(d.state);
+            statusLabel.setText("AI (" + d.rule.label + "): " + (d.state == 1 ? "Line" : "X"));
+            repaint();
+        });
+        solveTimer = timer;
+        timer.start();
+    }
+
+    // The fixpoint solve runs on the event thread, so it gets a deadline; the live partner otherwise has none.
+    private List<Deduction> solveBefore(long deadline) {
+        ai.deadline = deadline;
+        try { return ai.solveToFixpoint(cells, nodes, edges); } finally { ai.deadline = 0; }
+    }
+
+    // Referee errors and AI moves reach the status bar through the partner's listener; only here is text built.
+    private void showResult(MoveResult r) {
+        if (r.verdict == Verdict.VALID || r.verdict == Verdict.VICTORY || statusLabel == null) return;
+        statusLabel.setText(r.isError() ? "Referee: " + r.message() : r.message());
+    }
+
+    // A precomputed result reaches the status bar exactly as the partner's listener would have shown it.
+    private MoveResult serve(MoveResult r) {
+        showResult(r);
+        return r;
+    }
+
+    // A puzzle with a known unique solution is won exactly when the lines match it.
+    private boolean isVictory() {
+        if (known != null && known.unique) return known.matches(edges);
+        return ai.check(cells, edges, nodes).verdict == Verdict.VICTORY;
+    }
+
+    // A click the background analyzer already played is answered from its prediction instead of recomputed.
     private void handleMouseClick(int x, int y) {
         boolean moveMade = false;
         Edge changedEdge = null;
         int oldState = 0;
+        Speculator.Prediction predicted = null;
         
         for (Edge e : edges) {
             if (e.contains(x, y, GAP, OFFSET, OFFSET)) {
                 saveState();
                 changedEdge = e; oldState = e.state;
+                if (ai.heat == null) predicted = speculator.lookup(e.id, (e.state + 1) % 3);
+                speculator.invalidate();
                 e.setState((e.state + 1) % 3); 
                 moveMade = true; break;
             }
@@ -481,27 +2666,35 @@ public class CoopLoopy3 extends JPanel {
             
             final Edge targetEdge = changedEdge;
             final int targetOldState = oldState;
+            final Speculator.Prediction prediction = predicted;
             
             Timer humanTimer = new Timer(50, e -> {
-                String result = ai.checkHumanMove(cells, edges, nodes);
-                if (result.equals("VICTORY")) {
+                Verdict verdict = isVictory() ? Verdict.VICTORY : prediction != null ? serve(prediction.referee).verdict : ai.check(cells, edges, nodes).verdict;
+                if (verdict == Verdict.VICTORY) {
                     statusLabel.setText("Status: YOU WIN! PUZZLE SOLVED!");
                     JOptionPane.showMessageDialog(this, "CONGRATULATIONS!", "VICTORY", JOptionPane.INFORMATION_MESSAGE);
                     isProcessing = false;
-                } else if (result.startsWith("Error")) {
+                } else if (verdict.isError()) {
                     targetEdge.setState(targetOldState);
                     if (!history.isEmpty()) history.pop();
-                    statusLabel.setText("Referee: " + result);
                     repaint(); isProcessing = false;
+                    speculate(targetEdge.id);
                 } else {
                     statusLabel.setText("AI Thinking..."); repaint();
                     Timer aiTimer = new Timer(50, e2 -> {
-                        String aiResult = ai.makeMove(cells, nodes, edges);
-                        statusLabel.setText(aiResult);
+                        if (ai.heat != null) ai.heat.clear();
+                        if (prediction != null && prediction.reply != null) {
+                            for (int i = 0; i < prediction.reply.edgeCount; i++) edges.get(prediction.reply.edgeIds[i]).setState(prediction.reply.states[i]);
+                            serve(prediction.reply);
+                        } else {
+                            ai.move(cells, nodes, edges);
+                        }
                         repaint(); isProcessing = false;
                         
-                        if (ai.checkHumanMove(cells, edges, nodes).equals("VICTORY")) {
+                        if (isVictory()) {
                             statusLabel.setText("Status: AI FINISHED THE BOARD! YOU WIN!");
+                        } else {
+                            speculate(targetEdge.id);
                         }
                     });
                     aiTimer.setRepeats(false); aiTimer.start();
@@ -516,6 +2709,7 @@ public class CoopLoopy3 extends JPanel {
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g;
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (ai.heat != null) paintHeat(g2, ai.heat);
 
         g2.setColor(Color.BLACK);
         for (Node n : nodes) g2.fillOval(n.c * GAP + OFFSET - 3, n.r * GAP + OFFSET - 3, 6, 6);
@@ -538,6 +2732,36 @@ public class CoopLoopy3 extends JPanel {
         }
     }
 
+    // Solver effort since the AI's last move: stronger colour means more work, red means a refuted hypothesis.
+    private void paintHeat(Graphics2D g2, Heat heat) {
+        int max = 1, tested = 0, visits = 0, refuted = 0;
+        for (int e = 0; e < edges.size(); e++) {
+            max = Math.max(max, heat.score(e));
+            tested += heat.tested[e]; visits += heat.visits[e]; refuted += heat.contradictions[e];
+        }
+        for (Cell c : cells) {
+            int score = 0; boolean hit = false;
+            for (Edge e : c.edges) { score += heat.score(e.id); hit |= heat.contradictions[e.id] > 0; }
+            if (score == 0) continue;
+            g2.setColor(heatColor(score / (4.0 * max), hit, 110));
+            g2.fillRect(c.c * GAP + OFFSET, c.r * GAP + OFFSET, GAP, GAP);
+        }
+        g2.setStroke(HEAT_STROKE);
+        for (Edge e : edges) {
+            if (heat.score(e.id) == 0) continue;
+            g2.setColor(heatColor(heat.score(e.id) / (double) max, heat.contradictions[e.id] > 0, 220));
+            g2.drawLine(e.n1.c * GAP + OFFSET, e.n1.r * GAP + OFFSET, e.n2.c * GAP + OFFSET, e.n2.r * GAP + OFFSET);
+        }
+        g2.setColor(Color.DARK_GRAY);
+        g2.setFont(new Font("Arial", Font.PLAIN, 12));
+        g2.drawString("Tested " + tested + "  Visits " + visits + "  Contradictions " + refuted, OFFSET, ROWS * GAP + OFFSET + 30);
+    }
+
+    private static Color heatColor(double level, boolean refuted, int maxAlpha) {
+        int alpha = (int) (maxAlpha * Math.sqrt(Math.min(1, level)));
+        return refuted ? new Color(230, 40, 20, alpha) : new Color(255, 170, 0, alpha);
+    }
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("trial 4 - Pure Greedy");
@@ -562,28 +2786,36 @@ public class CoopLoopy3 extends JPanel {
             JButton btn1 = new JButton("Example 1");
             JButton btn2 = new JButton("Example 2");
             JButton btn3 = new JButton("Example 3");
+            JButton randomBtn = new JButton("Random Puzzle");
 
             btn1.setAlignmentX(Component.CENTER_ALIGNMENT); btn2.setAlignmentX(Component.CENTER_ALIGNMENT); btn3.setAlignmentX(Component.CENTER_ALIGNMENT);
+            randomBtn.setAlignmentX(Component.CENTER_ALIGNMENT);
             btn1.addActionListener(e -> { gamePanel.loadPuzzle(0); cardLayout.show(mainContainer, "GAME"); });
             btn2.addActionListener(e -> { gamePanel.loadPuzzle(1); cardLayout.show(mainContainer, "GAME"); });
             btn3.addActionListener(e -> { gamePanel.loadPuzzle(2); cardLayout.show(mainContainer, "GAME"); });
+            randomBtn.addActionListener(e -> { gamePanel.loadRandomPuzzle(); cardLayout.show(mainContainer, "GAME"); });
 
             menuPanel.add(title); menuPanel.add(Box.createRigidArea(new Dimension(0, 20)));
             menuPanel.add(rules); menuPanel.add(Box.createRigidArea(new Dimension(0, 20)));
             menuPanel.add(btn1); menuPanel.add(Box.createRigidArea(new Dimension(0, 10)));
             menuPanel.add(btn2); menuPanel.add(Box.createRigidArea(new Dimension(0, 10)));
-            menuPanel.add(btn3);
+            menuPanel.add(btn3); menuPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+            menuPanel.add(randomBtn);
 
             JPanel gameContainer = new JPanel(new BorderLayout());
             JButton backButton = new JButton("Back to Menu");
             JButton undoButton = new JButton("Undo");
+            JButton solveButton = new JButton("Solve");
+            JToggleButton heatButton = new JToggleButton("Heat Map", Boolean.getBoolean("loopy.heatmap"));
 
             backButton.addActionListener(e -> cardLayout.show(mainContainer, "MENU"));
             undoButton.addActionListener(e -> { if (!gamePanel.isProcessing) gamePanel.undoLastMove(); });
+            solveButton.addActionListener(e -> gamePanel.solveByDeduction());
+            heatButton.addActionListener(e -> gamePanel.setHeatMap(heatButton.isSelected()));
 
             JPanel bottomPanel = new JPanel(new BorderLayout());
             JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-            buttonPanel.add(backButton); buttonPanel.add(undoButton);
+            buttonPanel.add(backButton); buttonPanel.add(undoButton); buttonPanel.add(solveButton); buttonPanel.add(heatButton);
             bottomPanel.add(buttonPanel, BorderLayout.WEST);
             bottomPanel.add(gamePanel.statusLabel, BorderLayout.CENTER);
 
@@ -219,7 +219,8 @@ class ComputerPartner {
 // 3. GUI & GAME LOOP (Member 4)
 // ==========================================
 
-public class CoopLoopy extends JPanel {
+@SuppressWarnings("serial")
+class CoopLoopy extends JPanel {
     private final int ROWS = 5; private final int COLS = 5;
     private final int GAP = 60; private final int OFFSET = 50;
     
@@ -463,4 +464,50 @@ public class CoopLoopy extends JPanel {
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
     }
+}
+
+// ==========================================
+// ENTRY POINT FOR OTHER SOURCE FILES
+// ==========================================
+
+// Every class above is a file-private auxiliary, so tools elsewhere (EngineHarness) drive the old engine
+// through this handle. The graph is built exactly as CoopLoopy.initializeGame builds it: edge ids run over
+// the horizontals row by row, then the verticals, the same order CoopLoopy3 uses.
+final class CoopLoopyOld {
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<Edge> edges = new ArrayList<>();
+    private final List<Cell> cells = new ArrayList<>();
+    private final ComputerPartner ai = new ComputerPartner();
+    private final int rows, cols;
+
+    CoopLoopyOld(int[][] clues) {
+        rows = clues.length; cols = clues[0].length;
+        int nodeId = 0;
+        Node[][] nodeGrid = new Node[rows + 1][cols + 1];
+        for (int r = 0; r <= rows; r++) for (int c = 0; c <= cols; c++) { Node n = new Node(r, c, nodeId++); nodeGrid[r][c] = n; nodes.add(n); }
+        for (int r = 0; r <= rows; r++) for (int c = 0; c < cols; c++) {
+            Edge e = new Edge(nodeGrid[r][c], nodeGrid[r][c + 1], true);
+            edges.add(e); nodeGrid[r][c].connectedEdges.add(e); nodeGrid[r][c + 1].connectedEdges.add(e);
+        }
+        for (int r = 0; r < rows; r++) for (int c = 0; c <= cols; c++) {
+            Edge e = new Edge(nodeGrid[r][c], nodeGrid[r + 1][c], false);
+            edges.add(e); nodeGrid[r][c].connectedEdges.add(e); nodeGrid[r + 1][c].connectedEdges.add(e);
+        }
+        for (int r = 0; r < rows; r++) for (int c = 0; c < cols; c++) {
+            Cell cell = new Cell(r, c, clues[r][c]);
+            Node tl = nodeGrid[r][c], tr = nodeGrid[r][c + 1], bl = nodeGrid[r + 1][c], br = nodeGrid[r + 1][c + 1];
+            for (Edge e : edges) {
+                if ((e.n1 == tl && e.n2 == tr) || (e.n1 == bl && e.n2 == br) || (e.n1 == tl && e.n2 == bl) || (e.n1 == tr && e.n2 == br)) cell.edges.add(e);
+            }
+            cells.add(cell);
+        }
+        Collections.sort(cells);
+    }
+
+    int edgeCount() { return edges.size(); }
+    int state(int edge) { return edges.get(edge).state; }
+    void setState(int edge, int state) { edges.get(edge).state = state; }
+
+    String checkMove() { return ai.checkMove(cells, edges, nodes); }
+    String makeMove() { return ai.makeMove(cells, nodes, edges, rows, cols); }
 }
\ No newline at end of file
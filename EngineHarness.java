@@ -0,0 +1,162 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.List;
+
+// ==========================================
+// DIFFERENTIAL HARNESS: CoopLoopyOld vs CoopLoopy3
+// ==========================================
+//
+// Replays the same puzzles and move sequences through both engines and asserts that their referee
+// verdicts (VICTORY / Error / Valid) agree after every move. Each AI move from either engine is
+// copied onto the other board and checked too. Per-operation latency and allocated bytes are
+// recorded for both referees and both AIs.
+//
+//   java EngineHarness [sequences per puzzle] [moves per sequence] [seed]
+//
+// Exits with status 1 if any verdict differs.
+
+public class EngineHarness {
+
+    // Latency and allocation samples for one operation.
+    static class OpStats {
+        final String name;
+        long[] nanos = new long[1024];
+        long bytes;
+        int count;
+
+        OpStats(String name) { this.name = name; }
+
+        void record(long ns, long allocated) {
+            if (count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+            nanos[count++] = ns;
+            bytes += allocated;
+        }
+
+        String row() {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            double mean = 0;
+            for (long n : sorted) mean += n;
+            mean = count == 0 ? 0 : mean / count / 1000.0;
+            double p99 = count == 0 ? 0 : sorted[Math.min(count - 1, (int) (count * 0.99))] / 1000.0;
+            return String.format("%-22s %8d %10.2f %10.2f %12d", name, count, mean, p99, count == 0 ? 0 : bytes / count);
+        }
+    }
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final OpStats oldCheck = new OpStats("old.checkMove"), newCheck = new OpStats("new.check");
+    private final OpStats oldAi = new OpStats("old.makeMove"), newAi = new OpStats("new.move");
+    private final List<String> mismatches = new ArrayList<>();
+    private int compared;
+
+    EngineHarness() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        threads = bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    private long allocated() { return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId()); }
+
+    static String verdict(String result) { return result.equals("VICTORY") ? "VICTORY" : result.startsWith("Error") ? "ERROR" : "VALID"; }
+
+    static String verdict(CoopLoopy3.Verdict v) { return v == CoopLoopy3.Verdict.VICTORY ? "VICTORY" : v.isError() ? "ERROR" : "VALID"; }
+
+    private String[] referee(CoopLoopyOld ob, CoopLoopy3.Board nb, CoopLoopy3.ComputerPartner newEngine) {
+        long a0 = allocated(), t0 = System.nanoTime();
+        String o = ob.checkMove();
+        long t1 = System.nanoTime(), a1 = allocated();
+        CoopLoopy3.Verdict n = newEngine.check(nb.cells, nb.edges, nb.nodes).verdict;
+        long t2 = System.nanoTime(), a2 = allocated();
+        oldCheck.record(t1 - t0, a1 - a0);
+        newCheck.record(t2 - t1, a2 - a1);
+        return new String[]{verdict(o), verdict(n), o, n.name()};
+    }
+
+    private boolean compare(String context, CoopLoopyOld ob, CoopLoopy3.Board nb, CoopLoopy3.ComputerPartner newEngine) {
+        String[] r = referee(ob, nb, newEngine);
+        compared++;
+        if (r[0].equals(r[1])) return true;
+        StringBuilder states = new StringBuilder();
+        for (CoopLoopy3.Edge e : nb.edges) states.append(e.state);
+        mismatches.add(context + ": old=\"" + r[2] + "\" new=" + r[3] + " states=" + states);
+        return false;
+    }
+
+    private static void copyState(CoopLoopy3.Board from, CoopLoopyOld to) { for (int i = 0; i < from.edges.size(); i++) to.setState(i, from.edges.get(i).state); }
+
+    private static void copyState(CoopLoopyOld from, CoopLoopy3.Board to) { for (int i = 0; i < from.edgeCount(); i++) to.edges.get(i).setState(from.state(i)); }
+
+    // Clicks cycle an edge Empty -> Line -> Cross like the GUI; moves the referee rejects are undone like the GUI.
+    void replayClicks(String name, int[][] clues, byte[] solution, int sequences, int moves, Random rng) {
+        for (int s = 0; s < sequences; s++) {
+            CoopLoopyOld ob = new CoopLoopyOld(clues);
+            CoopLoopy3.Board nb = new CoopLoopy3.Board(clues);
+            CoopLoopy3.ComputerPartner newEngine = new CoopLoopy3.ComputerPartner();
+            for (int m = 0; m < moves; m++) {
+                int e = rng.nextInt(nb.edges.size());
+                if (solution != null && rng.nextInt(4) != 0) {
+                    for (int tries = 0; tries < nb.edges.size() && nb.edges.get(e).state == solution[e]; tries++) e = (e + 1) % nb.edges.size();
+                }
+                int old = nb.edges.get(e).state, next = (old + 1) % 3;
+                nb.edges.get(e).setState(next); ob.setState(e, next);
+                compare(name + " seq " + s + " move " + m, ob, nb, newEngine);
+                String v = verdict(newEngine.check(nb.cells, nb.edges, nb.nodes).verdict);
+                if (v.equals("ERROR")) { nb.edges.get(e).setState(old); ob.setState(e, old); }
+                if (v.equals("VICTORY")) break;
+            }
+        }
+    }
+
+    // Each engine's AI plays its own board; every position it reaches is copied across and refereed by both.
+    void replayAi(String name, int[][] clues, int moves) {
+        CoopLoopyOld ob = new CoopLoopyOld(clues), obMirror = new CoopLoopyOld(clues);
+        CoopLoopy3.Board nb = new CoopLoopy3.Board(clues), nbMirror = new CoopLoopy3.Board(clues);
+        CoopLoopy3.ComputerPartner newEngine = new CoopLoopy3.ComputerPartner();
+        for (int m = 0; m < moves; m++) {
+            long a0 = allocated(), t0 = System.nanoTime();
+            newEngine.move(nb.cells, nb.nodes, nb.edges);
+            long t1 = System.nanoTime(), a1 = allocated();
+            ob.makeMove();
+            long t2 = System.nanoTime(), a2 = allocated();
+            newAi.record(t1 - t0, a1 - a0);
+            oldAi.record(t2 - t1, a2 - a1);
+
+            copyState(nb, obMirror);
+            compare(name + " new-AI move " + m, obMirror, nb, newEngine);
+            copyState(ob, nbMirror);
+            compare(name + " old-AI move " + m, ob, nbMirror, newEngine);
+        }
+    }
+
+    void report() {
+        System.out.printf("%-22s %8s %10s %10s %12s%n", "operation", "count", "mean us", "p99 us", "bytes/op");
+        for (OpStats s : new OpStats[]{oldCheck, newCheck, oldAi, newAi}) System.out.println(s.row());
+        System.out.println("verdicts compared: " + compared + ", mismatches: " + mismatches.size());
+        for (int i = 0; i < Math.min(20, mismatches.size()); i++) System.out.println("  " + mismatches.get(i));
+    }
+
+    public static void main(String[] args) {
+        int sequences = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        Random rng = new Random(seed);
+
+        List<int[][]> puzzles = new ArrayList<>();
+        puzzles.add(new int[][]{{3, -1, -1, 3, -1}, {-1, 1, -1, -1, 2}, {-1, -1, -1, -1, -1}, {2, -1, 0, -1, 1}, {-1, 3, -1, 3, -1}});
+        puzzles.add(new int[][]{{3, 2, -1, -1, -1}, {2, -1, 1, -1, -1}, {3, -1, 0, -1, 2}, {2, -1, 1, -1, -1}, {3, 2, -1, -1, -1}});
+        puzzles.add(new int[][]{{-1, 2, -1, 2, -1}, {2, -1, 2, -1, 2}, {-1, 2, -1, 2, -1}, {2, -1, 2, -1, 2}, {-1, 2, -1, 2, -1}});
+        puzzles.addAll(CoopLoopy3.PuzzleGenerator.generateMany(5, 5, 4, seed));
+        puzzles.addAll(CoopLoopy3.PuzzleGenerator.generateMany(8, 8, 2, seed));
+
+        EngineHarness harness = new EngineHarness();
+        for (int i = 0; i < puzzles.size(); i++) {
+            int[][] clues = puzzles.get(i);
+            CoopLoopy3.SolutionCounter counter = new CoopLoopy3.SolutionCounter(CoopLoopy3.PackedBoard.fromClues(clues), 1);
+            counter.count();
+            String name = "puzzle " + i + " (" + clues.length + "x" + clues[0].length + ")";
+            harness.replayClicks(name, clues, counter.firstSolution(), sequences, moves, rng);
+            harness.replayAi(name, clues, clues.length * clues[0].length * 2);
+        }
+        harness.report();
+        if (!harness.mismatches.isEmpty()) System.exit(1);
+    }
+}
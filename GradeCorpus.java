@@ -0,0 +1,50 @@
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+
+// ==========================================
+// CORPUS DIFFICULTY REPORT
+// ==========================================
+//
+// Grades every puzzle of a corpus in parallel with CoopLoopy3.DifficultyGrader and prints the tier
+// histogram. The corpus file holds one board per line in the LoopyService encoding ("ROWSxCOLS;clues;");
+// without a file a corpus is generated instead.
+//
+//   java GradeCorpus file <corpus.txt> [-v]
+//   java GradeCorpus generate [rows] [cols] [count] [seed] [-v]
+//
+// -v also prints one line per puzzle.
+
+public class GradeCorpus {
+    public static void main(String[] args) throws Exception {
+        boolean verbose = Arrays.asList(args).contains("-v");
+        List<String> rest = new ArrayList<>(Arrays.asList(args));
+        rest.remove("-v");
+
+        List<int[][]> corpus = new ArrayList<>();
+        if (!rest.isEmpty() && rest.get(0).equals("file")) {
+            for (String line : Files.readAllLines(Paths.get(rest.get(1)))) {
+                if (!line.isBlank() && !line.startsWith("#")) corpus.add(LoopyService.Request.parse(line).clues);
+            }
+        } else {
+            int rows = rest.size() > 1 ? Integer.parseInt(rest.get(1)) : 10;
+            int cols = rest.size() > 2 ? Integer.parseInt(rest.get(2)) : rows;
+            int count = rest.size() > 3 ? Integer.parseInt(rest.get(3)) : 50;
+            long seed = rest.size() > 4 ? Long.parseLong(rest.get(4)) : 1;
+            corpus = CoopLoopy3.PuzzleGenerator.generateMany(rows, cols, count, seed);
+        }
+
+        long start = System.nanoTime();
+        List<CoopLoopy3.DifficultyGrader.Grade> grades = CoopLoopy3.DifficultyGrader.gradeAll(corpus);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        if (verbose) {
+            for (int i = 0; i < grades.size(); i++) {
+                CoopLoopy3.DifficultyGrader.Grade g = grades.get(i);
+                System.out.printf("%-60s %-16s %8.2f ms%n", LoopyService.encodeBoard(corpus.get(i)), g.hardest.label, g.nanos / 1e6);
+            }
+        }
+        System.out.print(CoopLoopy3.DifficultyGrader.summarize(grades));
+        System.out.printf("wall time %.2f s on %d threads%n", seconds, Runtime.getRuntime().availableProcessors());
+    }
+}
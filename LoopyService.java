@@ -0,0 +1,284 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ==========================================
+// LOCAL HINT / SOLVE SERVICE
+// ==========================================
+//
+// Board encoding: "ROWSxCOLS;clues;states"
+//   clues  - ROWS*COLS chars, row-major, '0'-'3' or '.' for no clue
+//   states - one char per edge in Edge.id order: '0' empty, '1' line, '2' cross (omit for an empty board)
+//
+// POST /check, /move or /solve with the encoding as the body, optionally ?deadline=<ms>.
+// Reply body: "<VERDICT>\n<message>\n<states>"
+//
+// Puzzles are solved once in the background and kept in a persistent cache (-Dloopy.cache, default
+// loopy-service.cache), after which victory checks, hints and solves for them are lookups.
+//
+//   java LoopyService serve [port]
+//   java LoopyService load [baseUrl] [concurrency] [requests]
+
+public class LoopyService {
+    private static final long DEFAULT_DEADLINE_MS = 250;
+    private static final int MAX_IDLE_SESSIONS = 256;
+
+    // One pooled board + partner per request in flight, keyed by board size and reused across requests. At most
+    // MAX_IDLE_SESSIONS sit idle across all sizes together; a session released past that is left to the GC.
+    static class Session {
+        final CoopLoopy3.Board board;
+        final CoopLoopy3.ComputerPartner ai = new CoopLoopy3.ComputerPartner();
+        String clueKey;
+
+        Session(int[][] clues) { this.board = new CoopLoopy3.Board(clues); }
+    }
+
+    static class Request {
+        int rows, cols;
+        int[][] clues;
+        int[] states;
+        String clueKey;
+
+        static Request parse(String body) {
+            String[] parts = body.trim().split(";", -1);
+            if (parts.length < 2) throw new IllegalArgumentException("expected ROWSxCOLS;clues;states");
+            String[] dims = parts[0].split("x");
+            Request req = new Request();
+            try {
+                req.rows = Integer.parseInt(dims[0]); req.cols = Integer.parseInt(dims[1]);
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("bad board size '" + parts[0] + "'");
+            }
+            if (req.rows < 1 || req.cols < 1 || (long) req.rows * req.cols > 10000) throw new IllegalArgumentException("board size out of range");
+            req.clueKey = parts[0] + ";" + parts[1];
+            if (parts[1].length() != req.rows * req.cols) throw new IllegalArgumentException("expected " + req.rows * req.cols + " clues");
+            req.clues = new int[req.rows][req.cols];
+            for (int i = 0; i < parts[1].length(); i++) {
+                char ch = parts[1].charAt(i);
+                if (ch != '.' && (ch < '0' || ch > '3')) throw new IllegalArgumentException("bad clue '" + ch + "'");
+                req.clues[i / req.cols][i % req.cols] = ch == '.' ? -1 : ch - '0';
+            }
+            int edgeCount = (req.rows + 1) * req.cols + req.rows * (req.cols + 1);
+            String states = parts.length > 2 ? parts[2] : "";
+            if (!states.isEmpty()) {
+                if (states.length() != edgeCount) throw new IllegalArgumentException("expected " + edgeCount + " edge states");
+                req.states = new int[edgeCount];
+                for (int i = 0; i < edgeCount; i++) {
+                    char ch = states.charAt(i);
+                    if (ch < '0' || ch > '2') throw new IllegalArgumentException("bad edge state '" + ch + "'");
+                    req.states[i] = ch - '0';
+                }
+            }
+            return req;
+        }
+    }
+
+    private final Map<Long, Queue<Session>> pool = new ConcurrentHashMap<>();
+    private final AtomicInteger idleSessions = new AtomicInteger();
+    private final CoopLoopy3.SolutionCache cache;
+    private final Set<Long> filling = ConcurrentHashMap.newKeySet();
+    private final ExecutorService filler = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(64), r -> {
+        Thread t = new Thread(r, "loopy-cache-fill"); t.setDaemon(true); return t;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+
+    public LoopyService(CoopLoopy3.SolutionCache cache) { this.cache = cache; }
+
+    // Cache hit, or null after queueing the puzzle to be solved off the request path.
+    private CoopLoopy3.SolutionCache.Entry known(int[][] clues) {
+        if (cache == null) return null;
+        CoopLoopy3.SolutionCache.Entry entry = cache.get(clues);
+        long key = CoopLoopy3.SolutionCache.key(clues);
+        if (entry == null && filling.add(key)) {
+            filler.execute(() -> { try { cache.lookupOrSolve(clues); } finally { filling.remove(key); } });
+        }
+        return entry;
+    }
+
+    // Virtual threads when the JVM has them (21+), otherwise a plain cached pool.
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096); // local clients only
+        server.createContext("/", this::handle);
+        server.setExecutor(requestExecutor());
+        server.start();
+        return server;
+    }
+
+    private Session acquire(Request req) {
+        Queue<Session> idle = pool.get((long) req.rows << 32 | req.cols);
+        Session s = idle == null ? null : idle.poll();
+        if (s == null) s = new Session(req.clues);
+        else idleSessions.decrementAndGet();
+        if (!req.clueKey.equals(s.clueKey)) { s.ai.forget(); s.clueKey = req.clueKey; }
+        s.board.load(req.clues, req.states);
+        return s;
+    }
+
+    private void release(Session s) {
+        s.ai.deadline = 0;
+        if (idleSessions.incrementAndGet() > MAX_IDLE_SESSIONS) { idleSessions.decrementAndGet(); return; }
+        pool.computeIfAbsent((long) s.board.rows << 32 | s.board.cols, k -> new ConcurrentLinkedQueue<>()).offer(s);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String op = exchange.getRequestURI().getPath();
+        String reply;
+        int code = 200;
+        try {
+            long deadlineMs = DEFAULT_DEADLINE_MS;
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null && query.startsWith("deadline=")) deadlineMs = Long.parseLong(query.substring(9));
+            Request req = Request.parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            Session s = acquire(req);
+            try {
+                s.ai.deadline = System.nanoTime() + deadlineMs * 1_000_000L;
+                reply = run(op, s, known(req.clues));
+            } finally {
+                release(s);
+            }
+        } catch (IllegalArgumentException ex) {
+            code = 400; reply = "ERROR\n" + ex.getMessage() + "\n";
+        } catch (RuntimeException ex) {
+            code = 500; reply = "ERROR\ninternal error: " + ex + "\n";
+        }
+        if (reply == null) { code = 404; reply = "ERROR\nunknown operation " + op + "\n"; }
+        byte[] out = reply.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, out.length);
+        try (OutputStream os = exchange.getResponseBody()) { os.write(out); }
+    }
+
+    private String run(String op, Session s, CoopLoopy3.SolutionCache.Entry known) {
+        CoopLoopy3.Board b = s.board;
+        switch (op) {
+            case "/check": {
+                if (known != null && known.unique && known.matches(b.edges)) return "VICTORY\nVICTORY\n" + encodeStates(b);
+                CoopLoopy3.MoveResult result = s.ai.check(b.cells, b.edges, b.nodes);
+                String verdict = result.verdict == CoopLoopy3.Verdict.VICTORY ? "VICTORY" : result.isError() ? "ERROR" : "VALID";
+                return verdict + "\n" + result.message() + "\n" + encodeStates(b);
+            }
+            case "/move": {
+                if (known != null && known.consistent(b.edges)) {
+                    List<CoopLoopy3.Deduction> steps = known.remaining(b.edges);
+                    if (!steps.isEmpty()) {
+                        CoopLoopy3.Deduction d = steps.get(0);
+                        d.edge.setState(d.state);
+                        return (known.matches(b.edges) ? "VICTORY" : "MOVE") + "\nAI (" + d.rule.label + "): " + (d.state == 1 ? "Line" : "X") + "\n" + encodeStates(b);
+                    }
+                }
+                String result = s.ai.move(b.cells, b.nodes, b.edges).message();
+                String verdict = s.ai.check(b.cells, b.edges, b.nodes).verdict == CoopLoopy3.Verdict.VICTORY ? "VICTORY" : s.ai.expired() ? "TIMEOUT" : "MOVE";
+                return verdict + "\n" + result + "\n" + encodeStates(b);
+            }
+            case "/solve": {
+                if (known != null && known.consistent(b.edges)) {
+                    for (CoopLoopy3.Edge e : b.edges) e.setState(known.solution[e.id]);
+                    return "SOLVED\nSolved from cache; the solution is unique.\n" + encodeStates(b);
+                }
+                int deduced = s.ai.solveToFixpoint(b.cells, b.nodes, b.edges).size();
+                if (s.ai.contradicted()) return "UNSOLVABLE\nThe board contradicts itself after " + deduced + " deductions.\n" + encodeStates(b);
+                if (s.ai.check(b.cells, b.edges, b.nodes).verdict == CoopLoopy3.Verdict.VICTORY) return "SOLVED\nSolved by deduction (" + deduced + " edges).\n" + encodeStates(b);
+                if (s.ai.expired()) return "TIMEOUT\nDeadline hit after " + deduced + " deductions.\n" + encodeStates(b);
+
+                CoopLoopy3.SolutionCounter counter = new CoopLoopy3.SolutionCounter(CoopLoopy3.PackedBoard.fromGraph(b.cells, b.edges), 2);
+                counter.deadline = s.ai.deadline;
+                int found = counter.count();
+                if (found == 0) return (counter.exhausted ? "TIMEOUT\nSearch deadline hit.\n" : "UNSOLVABLE\nNo loop completes this board.\n") + encodeStates(b);
+                byte[] solution = counter.firstSolution();
+                for (CoopLoopy3.Edge e : b.edges) e.setState(solution[e.id]);
+                String note = found > 1 ? "SOLVED\nSolved by search; the puzzle has more than one solution.\n" : counter.exhausted ? "SOLVED\nSolved by search; uniqueness not proven before the deadline.\n" : "SOLVED\nSolved by search; the solution is unique.\n";
+                return note + encodeStates(b);
+            }
+            default:
+                return null;
+        }
+    }
+
+    static String encodeStates(CoopLoopy3.Board b) {
+        char[] out = new char[b.edges.size()];
+        for (CoopLoopy3.Edge e : b.edges) out[e.id] = (char) ('0' + e.state);
+        return new String(out);
+    }
+
+    static String encodeBoard(int[][] clues) {
+        StringBuilder sb = new StringBuilder().append(clues.length).append('x').append(clues[0].length).append(';');
+        for (int[] row : clues) for (int v : row) sb.append(v < 0 ? '.' : (char) ('0' + v));
+        return sb.append(';').toString();
+    }
+
+    // ==========================================
+    // LOAD GENERATOR CLIENT
+    // ==========================================
+
+    static void load(String baseUrl, int concurrency, int requests) throws Exception {
+        List<String> boards = new ArrayList<>();
+        for (int[][] clues : CoopLoopy3.PuzzleGenerator.generateMany(10, 10, 8, 1)) boards.add(encodeBoard(clues));
+        String[] ops = {"/check", "/move", "/solve"};
+
+        HttpClient client = HttpClient.newBuilder().executor(requestExecutor()).build();
+        long[] latencies = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(requests);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            final int slot = i;
+            HttpRequest req = HttpRequest.newBuilder(URI.create(baseUrl + ops[i % ops.length]))
+                .POST(HttpRequest.BodyPublishers.ofString(boards.get(i % boards.size()))).build();
+            long sent = System.nanoTime();
+            client.sendAsync(req, HttpResponse.BodyHandlers.ofString()).whenComplete((resp, err) -> {
+                latencies[slot] = System.nanoTime() - sent;
+                if (err != null || resp.statusCode() != 200) failures.incrementAndGet();
+                inFlight.release();
+                done.countDown();
+            });
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%d requests, %d in flight, %.1f req/s, %d failed%n", requests, concurrency, requests / seconds, failures.get());
+        System.out.printf("latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+            pct(latencies, 0.50), pct(latencies, 0.90), pct(latencies, 0.99), pct(latencies, 0.999), latencies[requests - 1] / 1e6);
+    }
+
+    private static double pct(long[] sorted, double p) { return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1e6; }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "serve";
+        if (mode.equals("load")) {
+            load(args.length > 1 ? args[1] : "http://localhost:8080",
+                 args.length > 2 ? Integer.parseInt(args[2]) : 1000,
+                 args.length > 3 ? Integer.parseInt(args[3]) : 20000);
+        } else {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            CoopLoopy3.SolutionCache cache = null;
+            try {
+                cache = new CoopLoopy3.SolutionCache(java.nio.file.Paths.get(System.getProperty("loopy.cache", "loopy-service.cache")), Integer.getInteger("loopy.cacheBytes", 64 << 20));
+            } catch (IOException ex) {
+                System.out.println("Solution cache unavailable: " + ex.getMessage());
+            }
+            new LoopyService(cache).start(port);
+            System.out.println("Loopy service listening on port " + port);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.*;
+
+// ==========================================
+// SELF-CHECK: SOLVER INVARIANTS
+// ==========================================
+//
+// Checks the solver against facts that do not depend on the old engine, so EngineHarness cannot cover them:
+//   counts - SolutionCounter on empty 1x1 to 4x4 boards finds the known numbers of simple cycles on
+//            those grid graphs (1, 13, 213, 9349).
+//   loops  - random set/undo/propagate/copy sequences on PackedBoards: the O(1) segment-end bookkeeping
+//            behind hasPrematureLoop() agrees with a union-find scan written here, and undo() restores
+//            exactly the states at its mark.
+//
+//   java SelfCheck [sequences] [seed]
+//
+// Exits with status 1 if any check fails.
+
+public class SelfCheck {
+    private final List<String> failures = new ArrayList<>();
+
+    private void expect(boolean ok, String what) {
+        if (!ok) failures.add(what);
+    }
+
+    // --- EMPTY-BOARD LOOP COUNTS ---
+    void emptyBoardCounts() {
+        long[] known = {1, 13, 213, 9349};
+        for (int n = 1; n <= known.length; n++) {
+            int[][] clues = new int[n][n];
+            for (int[] row : clues) Arrays.fill(row, -1);
+            int found = CoopLoopy3.SolutionCounter.count(clues, 1_000_000);
+            System.out.printf("empty %dx%d: %d loops (expected %d)%n", n, n, found, known[n - 1]);
+            expect(found == known[n - 1], "empty " + n + "x" + n + " board has " + found + " loops, expected " + known[n - 1]);
+        }
+    }
+
+    // --- PREMATURE LOOPS UNDER SET / UNDO / COPY ---
+    void prematureLoops(int sequences, Random rng) {
+        int checks = 0, before = failures.size();
+        for (int s = 0; s < sequences; s++) {
+            int[][] clues = new int[4][4];
+            for (int[] row : clues) for (int c = 0; c < 4; c++) row[c] = rng.nextInt(4) == 0 ? rng.nextInt(4) : -1;
+            CoopLoopy3.PackedBoard pb = CoopLoopy3.PackedBoard.fromClues(clues);
+            Deque<Integer> marks = new ArrayDeque<>();
+            Deque<byte[]> saved = new ArrayDeque<>();
+            for (int m = 0; m < 300; m++) {
+                int op = rng.nextInt(10);
+                if (op < 6) {
+                    int e = rng.nextInt(pb.edgeCount);
+                    if (pb.state[e] != 0) continue;
+                    marks.push(pb.mark()); saved.push(pb.state.clone());
+                    pb.set(e, rng.nextInt(3) == 0 ? 2 : 1);
+                } else if (op < 8 && !marks.isEmpty()) {
+                    pb.undo(marks.pop());
+                    byte[] want = saved.pop();
+                    expect(Arrays.equals(pb.state, want), "sequence " + s + " op " + m + ": undo did not restore the states at its mark");
+                } else if (op == 8) {
+                    marks.push(pb.mark()); saved.push(pb.state.clone());
+                    pb.propagate(marks.peek());
+                } else if (rng.nextInt(20) == 0) {
+                    pb = pb.copy(); marks.clear(); saved.clear();
+                }
+                checks++;
+                boolean fast = pb.hasPrematureLoop(), scan = scanForPrematureLoop(pb);
+                expect(fast == scan, "sequence " + s + " op " + m + ": hasPrematureLoop() says " + fast + ", union-find says " + scan);
+            }
+        }
+        System.out.printf("premature-loop checks: %d, disagreements: %d%n", checks, failures.size() - before);
+    }
+
+    // A loop is premature unless it is the only one, holds every line, and satisfies every clue.
+    static boolean scanForPrematureLoop(CoopLoopy3.PackedBoard pb) {
+        int[] parent = new int[pb.nodeCount], lines = new int[pb.nodeCount];
+        for (int n = 0; n < pb.nodeCount; n++) parent[n] = n;
+        int cycles = 0, cycleRoot = -1, total = 0;
+        for (int e = 0; e < pb.edgeCount; e++) {
+            if (pb.state[e] != 1) continue;
+            total++;
+            int a = find(parent, pb.edgeN1[e]), b = find(parent, pb.edgeN2[e]);
+            if (a == b) { lines[a]++; cycles++; cycleRoot = a; }
+            else { parent[a] = b; lines[b] += lines[a] + 1; }
+        }
+        if (cycles == 0) return false;
+        if (cycles > 1 || lines[find(parent, cycleRoot)] < total) return true;
+        for (int k = 0; k < pb.cellCount; k++) {
+            if (pb.clue[k] < 0) continue;
+            int filled = 0;
+            for (int i = pb.cellEdgeStart[k]; i < pb.cellEdgeStart[k + 1]; i++) if (pb.state[pb.cellEdges[i]] == 1) filled++;
+            if (filled != pb.clue[k]) return true;
+        }
+        return false;
+    }
+
+    private static int find(int[] parent, int n) {
+        while (parent[n] != n) n = parent[n] = parent[parent[n]];
+        return n;
+    }
+
+    public static void main(String[] args) {
+        int sequences = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 2;
+        SelfCheck check = new SelfCheck();
+        check.emptyBoardCounts();
+        check.prematureLoops(sequences, new Random(seed));
+        System.out.println("failures: " + check.failures.size());
+        for (int i = 0; i < Math.min(20, check.failures.size()); i++) System.out.println("  " + check.failures.get(i));
+        if (!check.failures.isEmpty()) System.exit(1);
+    }
+}
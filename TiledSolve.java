@@ -0,0 +1,70 @@
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+
+// ==========================================
+// LARGE BOARD SOLVER
+// ==========================================
+//
+// Streams a rows x cols puzzle into a CoopLoopy3.TiledSolver directory and solves it tile by tile. The
+// puzzle is the border of a binary-tree maze grown over the even cells: every even cell joins its north or
+// west neighbour through the odd cell between them, so the cells form a tree and its outline is one loop.
+// Each cell is decided from a hash of its position, so nothing board-sized is ever held on the heap.
+//
+//   java TiledSolve <dir> [rows] [cols] [tile] [seed] [keep%] [-nolookahead]
+//
+// keep% is the share of clues written (default 100); the rest are left blank.
+
+public class TiledSolve {
+    public static void main(String[] args) throws Exception {
+        boolean lookahead = !Arrays.asList(args).contains("-nolookahead");
+        List<String> rest = new ArrayList<>(Arrays.asList(args));
+        rest.remove("-nolookahead");
+        if (rest.isEmpty()) { System.err.println("usage: java TiledSolve <dir> [rows] [cols] [tile] [seed] [keep%] [-nolookahead]"); System.exit(2); }
+
+        Path dir = Paths.get(rest.get(0));
+        int rows = rest.size() > 1 ? Integer.parseInt(rest.get(1)) : 1001;
+        int cols = rest.size() > 2 ? Integer.parseInt(rest.get(2)) : rows;
+        int tile = rest.size() > 3 ? Integer.parseInt(rest.get(3)) : CoopLoopy3.TiledSolver.TILE;
+        long seed = rest.size() > 4 ? Long.parseLong(rest.get(4)) : 1;
+        int keep = rest.size() > 5 ? Integer.parseInt(rest.get(5)) : 100;
+
+        Files.deleteIfExists(dir.resolve("edges.bin")); // a fresh puzzle, not a resumed one
+        try (CoopLoopy3.TiledSolver solver = new CoopLoopy3.TiledSolver(dir, rows, cols, tile)) {
+            long start = System.nanoTime();
+            for (int r = 0; r < rows; r++) for (int c = 0; c < cols; c++) {
+                boolean in = inside(seed, rows, cols, r, c);
+                int clue = (in != inside(seed, rows, cols, r - 1, c) ? 1 : 0) + (in != inside(seed, rows, cols, r + 1, c) ? 1 : 0)
+                         + (in != inside(seed, rows, cols, r, c - 1) ? 1 : 0) + (in != inside(seed, rows, cols, r, c + 1) ? 1 : 0);
+                solver.setClue(r, c, Math.floorMod(hash(seed ^ 0x5DEECE66DL, r, c), 100) < keep ? clue : -1);
+            }
+            System.out.printf("wrote %dx%d clues in %.1f ms%n", rows, cols, (System.nanoTime() - start) / 1e6);
+
+            CoopLoopy3.TiledSolver.Report report = solver.solve(lookahead);
+            System.out.println(report);
+            Runtime rt = Runtime.getRuntime();
+            System.out.printf("heap in use %.1f MB (max %.0f MB), %d threads%n", (rt.totalMemory() - rt.freeMemory()) / 1048576.0, rt.maxMemory() / 1048576.0, rt.availableProcessors());
+            if (!report.solved()) System.exit(1);
+        }
+    }
+
+    // Even cells are maze rooms; an odd cell is a passage when the room after it joined back through it.
+    static boolean inside(long seed, int rows, int cols, int r, int c) {
+        if (r < 0 || c < 0 || r >= rows || c >= cols || r % 2 == 1 && c % 2 == 1) return false;
+        if (r % 2 == 0 && c % 2 == 0) return true;
+        return r % 2 == 0 ? c + 1 < cols && joinsWest(seed, r, c + 1) : r + 1 < rows && !joinsWest(seed, r + 1, c);
+    }
+
+    private static boolean joinsWest(long seed, int r, int c) {
+        if (r == 0) return c > 0;
+        if (c == 0) return false;
+        return (hash(seed, r, c) & 1) == 0;
+    }
+
+    private static long hash(long seed, int r, int c) {
+        long h = seed * 0x9E3779B97F4A7C15L + ((long) r << 32 | c & 0xffffffffL);
+        h = (h ^ h >>> 33) * 0xff51afd7ed558ccdL;
+        h = (h ^ h >>> 33) * 0xc4ceb93fe1a85d53L;
+        return h ^ h >>> 33;
+    }
+}